@@ -29,11 +29,12 @@
 package com.gmail.filoghost.bedwars;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.function.Consumer;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.GameMode;
@@ -43,6 +44,7 @@ import org.bukkit.inventory.PlayerInventory;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import com.gmail.filoghost.bedwars.arena.Arena;
+import com.gmail.filoghost.bedwars.arena.ArenaLocator;
 import com.gmail.filoghost.bedwars.command.ArenaCommand;
 import com.gmail.filoghost.bedwars.command.BedwarsCommand;
 import com.gmail.filoghost.bedwars.command.ClassificaCommand;
@@ -53,6 +55,9 @@ import com.gmail.filoghost.bedwars.command.StatsCommand;
 import com.gmail.filoghost.bedwars.command.VotespecCommand;
 import com.gmail.filoghost.bedwars.database.PlayerData;
 import com.gmail.filoghost.bedwars.database.SQLManager;
+import com.gmail.filoghost.bedwars.database.StatsDelta;
+import com.gmail.filoghost.bedwars.database.StatsJournal;
+import com.gmail.filoghost.bedwars.database.StatsWriter;
 import com.gmail.filoghost.bedwars.hud.LobbyScoreboard;
 import com.gmail.filoghost.bedwars.listener.ChatListener;
 import com.gmail.filoghost.bedwars.listener.ChunkUnloadListener;
@@ -62,14 +67,17 @@ import com.gmail.filoghost.bedwars.listener.InteractListener;
 import com.gmail.filoghost.bedwars.listener.NatureListener;
 import com.gmail.filoghost.bedwars.listener.PlayerJoinQuitListener;
 import com.gmail.filoghost.bedwars.listener.PlayerListener;
+import com.gmail.filoghost.bedwars.listener.ResourceDropListener;
+import com.gmail.filoghost.bedwars.listener.ZoneListener;
 import com.gmail.filoghost.bedwars.settings.ItemSettings;
 import com.gmail.filoghost.bedwars.settings.MainSettings;
 import com.gmail.filoghost.bedwars.settings.PodiumSettings;
 import com.gmail.filoghost.bedwars.settings.objects.ArenaConfig;
-import com.gmail.filoghost.bedwars.timer.MySQLKeepAliveTimer;
 import com.gmail.filoghost.bedwars.timer.RankingUpdateTimer;
 import com.gmail.filoghost.bedwars.timer.SpectatorLocationCheckTimer;
+import com.gmail.filoghost.bedwars.timer.StatsFlushTimer;
 import com.gmail.filoghost.bedwars.timer.TickTimer;
+import com.gmail.filoghost.bedwars.utils.Ranking;
 import com.gmail.filoghost.bedwars.utils.Utils;
 import com.google.common.collect.Maps;
 
@@ -85,6 +93,8 @@ import wild.api.util.CaseInsensitiveMap;
 public class Bedwars extends JavaPlugin {
 
 	public static final String PREFIX = ChatColor.GRAY + "[" + ChatColor.LIGHT_PURPLE + "Bed Wars" + ChatColor.GRAY + "] ";
+	private static final int RANKING_RETRY_SECONDS = 10;
+	private static final int RANKING_MAX_RETRY_SECONDS = 300;
 	
 	private static Bedwars plugin;
 	@Getter private static TickTimer tickTimer;
@@ -96,7 +106,9 @@ public class Bedwars extends JavaPlugin {
 	
 	@Getter private static Map<String, Arena> arenasByName = new CaseInsensitiveMap<>();
 	@Getter private static Map<Player, Arena> arenasByPlayers = Maps.newConcurrentMap();
+	private static int nextTickOffset; // Assegnato in ordine alle arene per distribuire il lavoro periodico
 	
+	@Getter private static StatsWriter statsWriter;
 	private static Map<String, PlayerData> statsByPlayerName = Collections.synchronizedMap(new CaseInsensitiveMap<>());
 
 	public static Bedwars get() {
@@ -153,6 +165,15 @@ public class Bedwars extends JavaPlugin {
 			return;
 		}
 		
+		// Statistiche, comprese quelle non salvate prima dell'ultima chiusura
+		try {
+			statsWriter = new StatsWriter(new StatsJournal(new File(getDataFolder(), "journal"))).start();
+		} catch (IOException | SQLException e) {
+			e.printStackTrace();
+			criticalShutdown("Impossibile leggere il journal delle statistiche");
+			return;
+		}
+		
 		// Inizializzazione
 		plugin = this;
 		arenasFolder = new File(getDataFolder(), "arenas");
@@ -168,6 +189,8 @@ public class Bedwars extends JavaPlugin {
 		Bukkit.getPluginManager().registerEvents(new InteractListener(), this);
 		Bukkit.getPluginManager().registerEvents(new ChatListener(), this);
 		Bukkit.getPluginManager().registerEvents(new ChunkUnloadListener(), this);
+		Bukkit.getPluginManager().registerEvents(new ResourceDropListener(), this);
+		Bukkit.getPluginManager().registerEvents(new ZoneListener(), this);
 		
 		// Comandi
 		new BedwarsCommand(this, "bedwars", "bw");
@@ -198,25 +221,48 @@ public class Bedwars extends JavaPlugin {
 		
 		// Timer
 		(tickTimer = new TickTimer()).start();
-		new MySQLKeepAliveTimer().start();
-		new RankingUpdateTimer().start();
+		// Le classifiche vengono caricate una sola volta, poi restano aggiornate in memoria
+		loadRankings(0);
 		new SpectatorLocationCheckTimer().start();
+		new StatsFlushTimer().start();
+	}
+	
+	/**
+	 * I podi vengono aggiornati solo dopo che le classifiche sono state caricate, altrimenti mostrerebbero
+	 * solo i giocatori entrati dall'avvio. In caso di errore si riprova con un'attesa sempre più lunga.
+	 */
+	private void loadRankings(int failedAttempts) {
+		SQLManager.getExecutor().execute(() -> {
+			try {
+				Ranking.loadRankings();
+			} catch (SQLException e) {
+				e.printStackTrace();
+				int retrySeconds = Math.min(RANKING_RETRY_SECONDS << Math.min(failedAttempts, 5), RANKING_MAX_RETRY_SECONDS);
+				Bukkit.getConsoleSender().sendMessage(ChatColor.RED + "Impossibile caricare le classifiche dal database (tentativo " + (failedAttempts + 1) + "), nuovo tentativo tra " + retrySeconds + " secondi. Fino ad allora i podi non verranno aggiornati.");
+				Bukkit.getScheduler().runTaskLater(this, () -> loadRankings(failedAttempts + 1), retrySeconds * 20L);
+				return;
+			}
+			
+			if (failedAttempts > 0) {
+				Bukkit.getConsoleSender().sendMessage(ChatColor.GREEN + "Classifiche caricate dal database.");
+			}
+			Bukkit.getScheduler().runTask(this, () -> new RankingUpdateTimer().start());
+		});
 	}
 	
 	@Override
 	public void onDisable() {
+		if (tickTimer != null) {
+			tickTimer.shutdown();
+		}
 		for (Arena arena : getAllArenas()) {
 			arena.getEvents().getPlacedBlocksRegistry().restore();
 		}
-		for (Entry<String, PlayerData> entry : statsByPlayerName.entrySet()) {
-			if (entry.getValue().isNeedSave()) {
-				try {
-					SQLManager.savePlayerData(entry.getKey(), entry.getValue());
-				} catch (SQLException e) {
-					e.printStackTrace();
-				}
-			}
+		if (statsWriter != null) {
+			flushStats();
+			statsWriter.shutdown(MainSettings.stats_shutdownWaitMillis);
 		}
+		SQLManager.close();
 	}
 	
 	public static void setupToLobby(Player player) {
@@ -265,33 +311,102 @@ public class Bedwars extends JavaPlugin {
 		PlayerData stats = statsByPlayerName.get(player.getName());
 		if (stats == null) {
 			Utils.reportAnomaly("stats were not loaded", player);
-			stats = new PlayerData(0, 0, 0, 0, 0); // Stats di default per evitare errori, alla peggio non vengono segnate
+			stats = new PlayerData(null, 0, 0, 0, 0, 0); // Stats di default per evitare errori, alla peggio non vengono segnate
 		}
 		
 		return stats;
 	}
 	
-	public static void resetOnlinePlayersData() {
-		for (PlayerData stats : statsByPlayerName.values()) {
-			stats.resetToZero();
+	/**
+	 * Azzera le statistiche di tutti i giocatori. Le modifiche fatte prima della richiesta vengono scartate solo se
+	 * il database è stato azzerato, quelle successive vengono salvate normalmente.
+	 * @param callback chiamata nel thread principale con true se l'azzeramento è riuscito
+	 */
+	public static void resetStats(Consumer<Boolean> callback) {
+		// Tutte le modifiche fatte finora vengono messe in coda prima dell'azzeramento
+		flushStats();
+		
+		Map<PlayerData, PlayerData> copies = Maps.newIdentityHashMap();
+		synchronized (statsByPlayerName) {
+			for (PlayerData stats : statsByPlayerName.values()) {
+				copies.put(stats, stats.copy());
+			}
 		}
+		
+		statsWriter.requestReset(success -> {
+			if (success) {
+				Ranking.clear();
+				synchronized (statsByPlayerName) {
+					for (PlayerData stats : statsByPlayerName.values()) {
+						PlayerData copy = copies.get(stats);
+						if (copy != null) {
+							stats.subtract(copy);
+						}
+						
+						if (stats.getPlayerName() != null) {
+							if (stats.getWins() > 0) {
+								Ranking.getWins().set(stats.getPlayerName(), stats.getWins());
+							}
+							if (stats.getFinalKills() > 0) {
+								Ranking.getFinalKills().set(stats.getPlayerName(), stats.getFinalKills());
+							}
+						}
+					}
+				}
+			}
+			callback.accept(success);
+		});
 	}
 	
 	public static void loadStatsFromDatabase(String playerName) throws SQLException {
+		try {
+			// Se è appena uscito, le sue ultime statistiche potrebbero non essere ancora state scritte
+			statsWriter.awaitWritten(playerName, MainSettings.stats_loginWaitMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
 		statsByPlayerName.put(playerName, SQLManager.getStats(playerName));
 	}
 	
-	public static void unloadStatsToDatabase(String playerName) throws SQLException {
+	public static void unloadStats(String playerName) {
 		PlayerData stats = statsByPlayerName.remove(playerName);
 		if (stats == null) {
 			throw new IllegalStateException(playerName + "'s stats were not loaded");
 		}
 		
-		if (stats.isNeedSave()) {
-			SQLManager.savePlayerData(playerName, stats);
+		StatsDelta delta = stats.takeUnsavedDelta();
+		if (delta != null) {
+			statsWriter.submit(delta);
 		}
 	}
 	
+	/**
+	 * Consegna allo StatsWriter le modifiche di tutti i giocatori, senza aspettare il database.
+	 */
+	public static void flushStats() {
+		synchronized (statsByPlayerName) {
+			for (PlayerData stats : statsByPlayerName.values()) {
+				StatsDelta delta = stats.takeUnsavedDelta();
+				if (delta != null) {
+					statsWriter.submit(delta);
+				}
+			}
+		}
+		statsWriter.flushOverflow();
+	}
+	
+	public static int countUnsavedStats() {
+		int unsaved = 0;
+		synchronized (statsByPlayerName) {
+			for (PlayerData stats : statsByPlayerName.values()) {
+				if (stats.isNeedSave()) {
+					unsaved++;
+				}
+			}
+		}
+		return unsaved;
+	}
+	
 	public static ArenaConfig loadArenaConfig(String name) throws YamlerConfigurationException {
 		return loadArenaConfig(new File(arenasFolder, name.toLowerCase() + ".yml"));
 	}
@@ -317,12 +432,18 @@ public class Bedwars extends JavaPlugin {
 		arenaConfig.save(arenaFile);
 	}
 	
+	public static File getArenaTemplateFile(String name) {
+		return new File(arenasFolder, name.toLowerCase() + ".template");
+	}
+	
 	public static void addArena(Arena arena) {
 		if (getArenaByName(arena.getName()) != null) {
 			throw new IllegalArgumentException("arena " + arena.getName() + " already loaded");
 		}
 		
+		arena.setTickOffset(nextTickOffset++ % 20);
 		arenasByName.put(arena.getName(), arena);
+		ArenaLocator.register(arena);
 	}
 	
 	
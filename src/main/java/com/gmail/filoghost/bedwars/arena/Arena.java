@@ -28,6 +28,8 @@
  */
 package com.gmail.filoghost.bedwars.arena;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.EnumMap;
 import java.util.List;
@@ -36,6 +38,7 @@ import java.util.Map.Entry;
 
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.Chunk;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -47,6 +50,7 @@ import org.bukkit.block.Sign;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Item;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Villager.Profession;
@@ -59,10 +63,13 @@ import org.bukkit.potion.PotionEffectType;
 
 import com.gmail.filoghost.bedwars.Bedwars;
 import com.gmail.filoghost.bedwars.VanishManager;
+import com.gmail.filoghost.bedwars.arena.entities.EntityRegistry;
 import com.gmail.filoghost.bedwars.arena.entities.SpawningManager;
 import com.gmail.filoghost.bedwars.arena.events.EventManager;
 import com.gmail.filoghost.bedwars.arena.gameloop.GameloopManager;
 import com.gmail.filoghost.bedwars.arena.menu.TeamSelectorMenu;
+import com.gmail.filoghost.bedwars.arena.particles.ParticleBatch;
+import com.gmail.filoghost.bedwars.arena.region.ArenaTemplate;
 import com.gmail.filoghost.bedwars.arena.region.PlacedBlocksRegistry;
 import com.gmail.filoghost.bedwars.arena.region.ProtectedBlocksRegistry;
 import com.gmail.filoghost.bedwars.arena.region.ProtectedBlocksRegistry.ProtectionReason;
@@ -77,13 +84,19 @@ import com.gmail.filoghost.bedwars.arena.spawners.Spawner;
 import com.gmail.filoghost.bedwars.arena.specialization.BossManager;
 import com.gmail.filoghost.bedwars.arena.specialization.SpecializationManager;
 import com.gmail.filoghost.bedwars.arena.specialization.SpecializationPoll;
+import com.gmail.filoghost.bedwars.arena.zones.ZoneManager;
 import com.gmail.filoghost.bedwars.command.CommandValidateExtra;
 import com.gmail.filoghost.bedwars.hud.shop.TrapBuyableIcon;
 import com.gmail.filoghost.bedwars.hud.spectator.TeleporterMenu;
 import com.gmail.filoghost.bedwars.listener.ChunkUnloadListener;
+import com.gmail.filoghost.bedwars.profiler.TickProfiler;
+import com.gmail.filoghost.bedwars.profiler.TickSection;
 import com.gmail.filoghost.bedwars.settings.objects.ArenaConfig;
 import com.gmail.filoghost.bedwars.settings.objects.SpawnerConfig;
 import com.gmail.filoghost.bedwars.settings.objects.TeamConfig;
+import com.gmail.filoghost.bedwars.timer.ArenaResetTimer;
+import com.gmail.filoghost.bedwars.timer.TickTimer;
+import com.gmail.filoghost.bedwars.utils.ResourceLocator;
 import com.gmail.filoghost.bedwars.utils.Utils;
 import com.gmail.filoghost.holographicmobs.api.HolographicMobsAPI;
 import com.gmail.filoghost.holographicmobs.object.types.HologramVillager;
@@ -99,13 +112,13 @@ import wild.api.item.ItemBuilder;
 import wild.api.menu.Icon;
 import wild.api.sound.EasySound;
 import wild.api.util.UnitFormatter;
-import wild.api.world.Particle;
 
 public class Arena {
 	
 	// Settings
 	@Getter private final String name;
 	@Getter private final Region region;
+	@Getter private final ArenaTemplate template; // Può essere null se non è mai stato salvato
 	@Getter private final Location lobby;
 	@Getter private final Location spectatorSpawn;
 	private final Block sign;
@@ -131,6 +144,15 @@ public class Arena {
 	@Getter private final BossManager bossManager;
 	@Getter private final SpecializationManager specManager;
 	@Getter private final SpawningManager spawningManager;
+	@Getter private final EntityRegistry entityRegistry;
+	@Getter private final TickProfiler profiler;
+	@Getter private final PlayerGrid playerGrid; // Posizioni dei giocatori vivi, per le ricerche per distanza
+	@Getter private final ArenaTickPlan tickPlan;
+	private boolean signRefreshPending;
+	@Getter @Setter private int tickOffset; // Sfasamento rispetto alle altre arene per il lavoro periodico
+	@Getter private final ParticleBatch particles; // Inviate a fine tick da ParticleDispatcher
+	@Getter private final TeamIndex teamIndex; // Giocatori divisi per team, per non scorrere tutti i giocatori
+	@Getter private final ZoneManager zones; // Zone di trappole ed effetti attorno ai letti, registrate dai TeamStatus
 	@Getter private final ShopManager shopManager;
 	
 	public Arena(ArenaConfig config) throws Exception {
@@ -138,6 +160,7 @@ public class Arena {
 		
 		this.name = config.name;
 		this.region = new Region(config);
+		this.template = loadTemplate(name, region);
 		this.lobby = config.bossLocation.getLocation();
 		this.spectatorSpawn = config.spectatorSpawn.getLocation();
 		this.sign = config.sign.getBlock();
@@ -150,12 +173,18 @@ public class Arena {
 		this.events = new EventManager(this, new PlacedBlocksRegistry(region), new ProtectedBlocksRegistry(region));
 		this.specManager = new SpecializationManager(this);
 		this.spawningManager = new SpawningManager(this);
+		this.entityRegistry = new EntityRegistry();
+		this.profiler = new TickProfiler(TickSection.ARENA_TOTAL);
 		this.shopManager = new ShopManager(this);
 		this.bossManager = new BossManager(this, config.bossLocation.getLocation());
 
 		this.villagers = Lists.newArrayList();
 		
 		this.playerStatuses = Maps.newConcurrentMap();
+		this.teamIndex = new TeamIndex();
+		this.particles = new ParticleBatch();
+		this.playerGrid = new PlayerGrid(region, playerStatuses.values());
+		this.zones = new ZoneManager(playerGrid);
 		this.teamStatuses = new EnumMap<>(Team.class);
 		for (Entry<String, TeamConfig> entry : config.teamConfigs.entrySet()) {
 			Team team = Team.valueOf(entry.getKey().toUpperCase());
@@ -179,7 +208,7 @@ public class Arena {
 		
 		this.globalSpawners = Lists.newArrayList();
 		for (SpawnerConfig spawnerConfig : config.spawners) {
-			Spawner spawner = new Spawner(spawnerConfig.type, spawnerConfig.block.getBlock(), maxPlayersPerTeam);
+			Spawner spawner = new Spawner(spawnerConfig.type, spawnerConfig.block.getBlock(), maxPlayersPerTeam, profiler);
 			
 			if (spawner.getResource().isPublic()) {
 				// Imposta come globale
@@ -202,12 +231,40 @@ public class Arena {
 			events.getProtectedBlocksRegistry().setRangeProtectionReason(globalSpawner.getBlock(), config.generatorsProtectionRadius, ProtectionReason.GENERATORS);
 		}
 		
+		this.tickPlan = new ArenaTickPlan(this);
 		reset();
 	}
 	
+	private static ArenaTemplate loadTemplate(String name, Region region) {
+		File templateFile = Bedwars.getArenaTemplateFile(name);
+		if (!templateFile.isFile()) {
+			return null;
+		}
+		
+		try {
+			ArenaTemplate template = ArenaTemplate.load(templateFile);
+			if (!template.matches(region)) {
+				Bukkit.getConsoleSender().sendMessage(ChatColor.RED + "[Bedwars] Il template dell'arena " + name + " non corrisponde alla regione, salva di nuovo l'arena.");
+				return null;
+			}
+			return template;
+		} catch (IOException e) {
+			e.printStackTrace();
+			Bukkit.getConsoleSender().sendMessage(ChatColor.RED + "[Bedwars] Impossibile leggere il template dell'arena " + name + ".");
+			return null;
+		}
+	}
+	
 	
 	public void reset() {
-		arenaStatus = ArenaStatus.LOBBY;
+		if (arenaStatus == ArenaStatus.RESETTING) {
+			Utils.reportAnomaly("arena is already resetting", this);
+			return;
+		}
+		
+		arenaStatus = ArenaStatus.RESETTING;
+		setSpawnersActive(false);
+		zones.clear();
 		
 		for (Player player : getPlayers()) {
 			VanishManager.setHidden(player, false);
@@ -217,48 +274,18 @@ public class Arena {
 		}
 		
 		playerStatuses.clear();
+		teamIndex.clear();
 		
-		// Reset blocchi
-		events.getPlacedBlocksRegistry().restore();
-		
-		// Reset casse memorizzate
+		// Reset casse memorizzate, vengono ritrovate durante il ripristino dei chunk
 		for (TeamStatus teamStatus : teamStatuses.values()) {
 			teamStatus.getTeamChests().clear();
 		}
-	
-		region.iterateChunks(chunk -> {
-			// Aggiornamento casse e reset contenuti
-			for (BlockState tileEntity : chunk.getTileEntities()) {
-				if (tileEntity instanceof Chest && region.isInside(tileEntity.getBlock())) {
-					Chest chest = (Chest) tileEntity;
-					chest.getInventory().clear();
-					getNearestTeam(chest.getBlock()).getTeamChests().add(chest.getBlock());
-				}
-			}
-			
-			// Pulizia oggetti e entità
-			for (Entity entity : chunk.getEntities()) {
-				if (entity.getType() == EntityType.DROPPED_ITEM || (entity instanceof LivingEntity && entity.getType() != EntityType.PLAYER)) {
-					if (region.isInside(entity.getLocation())) {
-						entity.remove();
-					}
-				}
-			}
-		});
-
-		// Reset status team
-		for (TeamStatus teamStatus : teamStatuses.values()) {
-			teamStatus.reset();
-		}
 		
 		// Reset spawner
 		for (Spawner spawner : globalSpawners) {
 			spawner.reset();
 		}
 		
-		// Consenti lo scaricamento dei chunk
-		ChunkUnloadListener.allowUnload(this);
-		
 		// Menu e scoreboard
 		teamSelectorMenu = new TeamSelectorMenu(this);
 		teleporterMenu = new TeleporterMenu(this);
@@ -268,12 +295,99 @@ public class Arena {
 		// Boss
 		bossManager.endBossForever();
 		bossManager.reset();
+		entityRegistry.clear();
+		
+		refreshSign();
+		
+		// Blocchi, casse ed entità vengono ripristinati un po' per tick
+		new ArenaResetTimer(this).start();
+	}
+	
+	
+	public void setSpawnersActive(boolean active) {
+		for (Spawner spawner : globalSpawners) {
+			if (active) {
+				spawner.start();
+			} else {
+				spawner.stop();
+			}
+		}
+		for (TeamStatus teamStatus : teamStatuses.values()) {
+			for (Spawner spawner : teamStatus.getTeamSpawners()) {
+				if (active) {
+					spawner.start();
+				} else {
+					spawner.stop();
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Chiamato per ogni chunk della regione durante il ripristino
+	 */
+	public void resetChunk(Chunk chunk) {
+		// Aggiornamento casse e reset contenuti
+		for (BlockState tileEntity : chunk.getTileEntities()) {
+			if (tileEntity instanceof Chest && region.isInside(tileEntity.getBlock())) {
+				Chest chest = (Chest) tileEntity;
+				chest.getInventory().clear();
+				getNearestTeam(chest.getBlock()).getTeamChests().add(chest.getBlock());
+			}
+		}
+		
+		// Pulizia oggetti e entità
+		for (Entity entity : chunk.getEntities()) {
+			if (entity.getType() == EntityType.DROPPED_ITEM || (entity instanceof LivingEntity && entity.getType() != EntityType.PLAYER)) {
+				if (region.isInside(entity.getLocation())) {
+					if (entity instanceof Item) {
+						ResourceLocator.removeDrop((Item) entity);
+					}
+					entity.remove();
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Chiamato quando il ripristino dei blocchi e dei chunk è terminato
+	 */
+	public void finishReset() {
+		// Reset status team (anche i letti, dopo aver ripristinato i blocchi)
+		for (TeamStatus teamStatus : teamStatuses.values()) {
+			teamStatus.reset();
+		}
+		
+		// Consenti lo scaricamento dei chunk
+		ChunkUnloadListener.allowUnload(this);
 		
+		arenaStatus = ArenaStatus.LOBBY;
 		refreshSign();
 	}
 
 	
 	public void refreshSign() {
+		TickTimer tickTimer = Bedwars.getTickTimer();
+		if (tickTimer != null && tickTimer.getLoadGovernor().isSignRefreshDelayed()) {
+			// Sotto carico il cartello viene aggiornato al massimo una volta al secondo
+			signRefreshPending = true;
+			return;
+		}
+		
+		signRefreshPending = false;
+		updateSign();
+	}
+	
+	public void refreshPendingSign() {
+		if (signRefreshPending) {
+			signRefreshPending = false;
+			updateSign();
+		}
+	}
+	
+	private void updateSign() {
 		BlockState state = sign.getState();
 		if (state instanceof Sign) {
 			Sign sign = (Sign) state;
@@ -297,6 +411,11 @@ public class Arena {
 			return;
 		}
 		
+		if (arenaStatus == ArenaStatus.RESETTING) {
+			player.sendMessage(ChatColor.RED + "Questa arena si sta ripristinando, riprova tra poco.");
+			return;
+		}
+		
 		if (arenaStatus == ArenaStatus.LOBBY && playerStatuses.size() >= maxPlayers) {
 			player.sendMessage(ChatColor.RED + "Questa arena è piena.");
 			return;
@@ -312,6 +431,7 @@ public class Arena {
 
 		// Salva lo stato del giocatore
 		playerStatuses.put(player, playerStatus);
+		teamIndex.add(playerStatus);
 		Bedwars.getArenasByPlayers().put(player, this);
 		
 		if (arenaStatus == ArenaStatus.LOBBY) {
@@ -336,6 +456,8 @@ public class Arena {
 		}
 		
 		PlayerStatus leftStatus = playerStatuses.remove(player);
+		teamIndex.remove(leftStatus);
+		zones.removePlayer(leftStatus);
 		Team leftTeam = leftStatus.getTeam();
 		if (leftTeam != null) {
 			SpecializationPoll activeSpecPoll = getTeamStatus(leftTeam).getActiveSpecializationPoll();
@@ -419,140 +541,80 @@ public class Arena {
 	}
 	
 	
+	/**
+	 * Ultima fase del tick, dopo che ArenaTickPlan ha copiato i dati e calcolato le azioni (anche in parallelo con le altre arene)
+	 */
 	public void onTick(int ticks) {
 		if (arenaStatus != ArenaStatus.COMBAT) {
 			return;
 		}
 		
-		// Controllo regen e resistenza ogni mezzo secondo
-		boolean checkSpawnEffects = ticks % 10 == 0;
-		
-		// Controllot trappole ogni mezzo secondo ma alternato rispetto a regen
-		boolean checkTraps = ticks % 10 == 5;
-		
-		// Mostra le particelle spesso
-		boolean showInvincibilityParticles = ticks % 5 == 0;
+		// Spawner e sondaggi sono programmati nel TimingWheel, effetti vicino al letto, trappole e particelle in ArenaTickPlan
+		tickPlan.apply();
 		
 		// Tick al boss ogni secondo
-		boolean tickBoss = ticks % 20 == 0;
-		
-		for (Spawner spawner : globalSpawners) {
-			spawner.onTick();
+		if ((ticks + tickOffset) % 20 == 0) {
+			long sectionStart = System.nanoTime();
+			bossManager.onBossCountdown();
+			profiler.add(TickSection.BOSS, sectionStart);
 		}
-		
-		for (TeamStatus teamStatus : teamStatuses.values()) {
-			SpecializationPoll activeSpecPoll = teamStatus.getActiveSpecializationPoll();
-			
-			if (activeSpecPoll != null) {
-				int ticksRemaining = activeSpecPoll.getTicksRemaining();
-				
-				if (ticksRemaining <= 0) {
-					specManager.endPoll(teamStatus);
-				} else {
-					if (ticksRemaining == 10 * 20 || ticksRemaining == 30 * 20) {
-						broadcastTeam(teamStatus.getTeam(), "Mancano " + (ticksRemaining / 20) + " secondi alla fine del sondaggio per la specializzazione!");
-						specManager.promptPollOptions(teamStatus, activeSpecPoll);
-					}
-				}
-				
-				activeSpecPoll.onTick();
-			}
-			
-			for (Spawner spawner : teamStatus.getTeamSpawners()) {
-				spawner.onTick();
-			}
-			
-			if (checkSpawnEffects) {
-				int regenLevel = teamStatus.getUpgradeLevel(TeamUpgrade.SPAWN_REGEN);
-				int resistanceLevel = teamStatus.getUpgradeLevel(TeamUpgrade.SPAWN_RESISTANCE);
-				
-				if (regenLevel > 0 || resistanceLevel > 0) {
-					for (PlayerStatus playerStatus : playerStatuses.values()) {
-						if (playerStatus.getTeam() == teamStatus.getTeam()) {
-							// Applica regen a quelli entro 10 blocchi dal proprio letto
-							Player player = playerStatus.getPlayer();
-							
-							if (player.getLocation().distanceSquared(teamStatus.getBedCenter()) <= 225.0) {
-								if (regenLevel > 0) {
-									if (Utils.getActivePotionLevel(player, PotionEffectType.REGENERATION) <= 0) {
-										player.addPotionEffect(Constants.EFFECT_REGEN, true);
-									}
-								}
-								if (resistanceLevel > 0) {
-									playerStatus.getPlayer().addPotionEffect(Constants.EFFECT_RESISTANCE, true);
-								}
-							}
-						}
-					}
-				}
-			}
-			
-			if (checkTraps) {
-				Trap activeTrap = teamStatus.getNextActiveTrap();
-				// Continua a controllare finché ci sono trappole attive
-				
-				if (activeTrap != null) {
-					// Trova un nemico in un certo raggio dal letto
-					PlayerStatus intruderStatus = getNearIntruder(teamStatus, true, ticks);
-					
-					if (intruderStatus != null) {
-						Player intruder = intruderStatus.getPlayer();
-						
-						// Applica la trappola solo a quel nemico, la disattiva e ignora gli altri
-						teamStatus.setTrapActive(activeTrap, false);
-						activeTrap.getTrapReaction().onTrigger(intruder);
-						WildCommons.sendTitle(intruder, 5, 40, 5, ChatColor.RED + activeTrap.getName(), ChatColor.DARK_RED + "Trappola attivata!");
-						EasySound.quickPlay(intruder, Sound.CHEST_OPEN, 0.8f);
-						intruderStatus.startTrapCooldown(ticks, activeTrap);
-						
-						// Notifica il team
-						broadcastTeam(teamStatus.getTeam(), intruderStatus.getTeam().getChatColor() + intruder.getName() + ChatColor.GRAY + " ha attivato una trappola!");
-						broadcastTeamSound(teamStatus.getTeam(), Sound.NOTE_PLING);
-						
-						// Aggiorna l'icona nello shop
-						for (int slot = 0; slot < teamStatus.getTeamShop().getSize(); slot++) {
-							Icon icon = teamStatus.getTeamShop().getIconAt(slot);
-							if (icon instanceof TrapBuyableIcon) {
-								TrapBuyableIcon trapIcon = (TrapBuyableIcon) icon;
-								if (trapIcon.getTrap() == activeTrap) {
-									trapIcon.updateIcon();
-									teamStatus.getTeamShop().refresh(trapIcon);
-								}
-							}
-						}
-					}
-				}
-			}
+	}
+	
+	void applySpawnEffects(TeamStatus teamStatus, PlayerStatus playerStatus) {
+		if (arenaStatus != ArenaStatus.COMBAT || playerStatus.isSpectator() || playerStatus.getTeam() != teamStatus.getTeam()) {
+			return;
 		}
 		
-		if (showInvincibilityParticles) {
-			for (PlayerStatus playerStatus : playerStatuses.values()) {
-				if (!playerStatus.isSpectator() && playerStatus.getTeam() != null && playerStatus.hasRespawnInvincibility()) {
-					// Mostra effetto
-					Location loc = playerStatus.getPlayer().getLocation();
-					Particle.SPELL.display(loc, 0.3F, 1.0F, 0.3F, 0.0F, 20);
-					Particle.SMOKE.display(loc, 0.3F, 1.2F, 0.3F, 0.0F, 60);
-					Particle.HAPPY_VILLAGER.display(loc, 0.3F, 1.2F, 0.3F, 0.0F, 4);
-				}
+		PotionEffectLedger potionEffects = playerStatus.getPotionEffects();
+		if (teamStatus.getUpgradeLevel(TeamUpgrade.SPAWN_REGEN) > 0) {
+			// Non sostituisce una rigenerazione più forte ottenuta in altri modi
+			if (potionEffects.needsRefresh(Constants.EFFECT_REGEN, Constants.SPAWN_EFFECTS_REFRESH_TICKS) && Utils.getActivePotionLevel(playerStatus.getPlayer(), PotionEffectType.REGENERATION) <= 0) {
+				potionEffects.apply(Constants.EFFECT_REGEN, Constants.SPAWN_EFFECTS_REFRESH_TICKS);
 			}
 		}
-		
-		if (tickBoss) {
-			bossManager.onBossCountdown();
+		if (teamStatus.getUpgradeLevel(TeamUpgrade.SPAWN_RESISTANCE) > 0) {
+			potionEffects.apply(Constants.EFFECT_RESISTANCE, Constants.SPAWN_EFFECTS_REFRESH_TICKS);
 		}
 	}
 	
-	private PlayerStatus getNearIntruder(TeamStatus allyTeamStatus, boolean skipPlayersWithTrapCooldown, int ticks) {
-		for (PlayerStatus playerStatus : playerStatuses.values()) {
-			if (!playerStatus.isSpectator() &&
-				playerStatus.getTeam() != allyTeamStatus.getTeam() &&
-				(skipPlayersWithTrapCooldown || !playerStatus.hasTrapCooldown(ticks)) &&
-				playerStatus.getPlayer().getLocation().distanceSquared(allyTeamStatus.getBedCenter()) < 100.0) {
-					return playerStatus;
-			}
+	/**
+	 * @return true se il giocatore è un nemico e ha attivato una trappola
+	 */
+	boolean tryTriggerTrap(TeamStatus teamStatus, PlayerStatus intruderStatus) {
+		if (arenaStatus != ArenaStatus.COMBAT || intruderStatus.isSpectator() || intruderStatus.getTeam() == null || intruderStatus.getTeam() == teamStatus.getTeam()) {
+			return false;
 		}
 		
-		return null;
+		Trap activeTrap = teamStatus.getNextActiveTrap();
+		if (activeTrap == null) {
+			return false;
+		}
+		
+		Player intruder = intruderStatus.getPlayer();
+		
+		// Applica la trappola solo a quel nemico, la disattiva e ignora gli altri
+		teamStatus.setTrapActive(activeTrap, false);
+		activeTrap.getTrapReaction().onTrigger(intruderStatus.getPotionEffects());
+		WildCommons.sendTitle(intruder, 5, 40, 5, ChatColor.RED + activeTrap.getName(), ChatColor.DARK_RED + "Trappola attivata!");
+		EasySound.quickPlay(intruder, Sound.CHEST_OPEN, 0.8f);
+		intruderStatus.startTrapCooldown(Bedwars.getTickTimer().getTicks(), activeTrap);
+		
+		// Notifica il team
+		broadcastTeam(teamStatus.getTeam(), intruderStatus.getTeam().getChatColor() + intruder.getName() + ChatColor.GRAY + " ha attivato una trappola!");
+		broadcastTeamSound(teamStatus.getTeam(), Sound.NOTE_PLING);
+		
+		// Aggiorna l'icona nello shop
+		for (int slot = 0; slot < teamStatus.getTeamShop().getSize(); slot++) {
+			Icon icon = teamStatus.getTeamShop().getIconAt(slot);
+			if (icon instanceof TrapBuyableIcon) {
+				TrapBuyableIcon trapIcon = (TrapBuyableIcon) icon;
+				if (trapIcon.getTrap() == activeTrap) {
+					trapIcon.updateIcon();
+					teamStatus.getTeamShop().refresh(trapIcon);
+				}
+			}
+		}
+		return true;
 	}
 
 	
@@ -571,10 +633,8 @@ public class Arena {
 	
 	
 	public void applyUpgrade(TeamStatus teamStatus, Upgrade upgrade) {
-		for (PlayerStatus playerStatus : playerStatuses.values()) {
-			if (!playerStatus.isSpectator() && playerStatus.getTeam() == teamStatus.getTeam()) {
-				applyUpgrade(playerStatus, teamStatus, upgrade);
-			}
+		for (PlayerStatus playerStatus : teamIndex.getLivePlayers(teamStatus.getTeam())) {
+			applyUpgrade(playerStatus, teamStatus, upgrade);
 		}
 
 		// Aggiorna anche gli oggetti nelle casse e le cose globali
@@ -648,26 +708,20 @@ public class Arena {
 	}
 	
 	public void broadcastTeam(Team team, String message) {
-		for (PlayerStatus playerStatus : playerStatuses.values()) {
-			if (playerStatus.getTeam() == team) {
-				playerStatus.getPlayer().sendMessage(Bedwars.PREFIX + message);
-			}
+		for (PlayerStatus playerStatus : teamIndex.getPlayers(team)) {
+			playerStatus.getPlayer().sendMessage(Bedwars.PREFIX + message);
 		}
 	}
 	
 	private void broadcastTeamSound(Team team, Sound sound) {
-		for (PlayerStatus playerStatus : playerStatuses.values()) {
-			if (playerStatus.getTeam() == team) {
-				EasySound.quickPlay(playerStatus.getPlayer(), sound);
-			}
+		for (PlayerStatus playerStatus : teamIndex.getPlayers(team)) {
+			EasySound.quickPlay(playerStatus.getPlayer(), sound);
 		}
 	}
 	
 	public void broadcastTeamTitle(Team team, String title, String subtitle, int ticksVisible) {
-		for (PlayerStatus playerStatus : playerStatuses.values()) {
-			if (playerStatus.getTeam() == team) {
-				WildCommons.sendTitle(playerStatus.getPlayer(), 5, ticksVisible, 5, title, subtitle);
-			}
+		for (PlayerStatus playerStatus : teamIndex.getPlayers(team)) {
+			WildCommons.sendTitle(playerStatus.getPlayer(), 5, ticksVisible, 5, title, subtitle);
 		}
 	}
 
@@ -675,6 +729,7 @@ public class Arena {
 	public void giveEquip(Player player, PlayerStatus playerStatus, TeamStatus teamStatus) {
 		WildCommons.clearInventoryFully(player);
 		WildCommons.removePotionEffects(player);
+		playerStatus.getPotionEffects().clear();
 		PlayerInventory inventory = player.getInventory();
 		
 		if (arenaStatus == ArenaStatus.LOBBY) {
@@ -770,30 +825,22 @@ public class Arena {
 		int hasteLevel = teamStatus.getUpgradeLevel(TeamUpgrade.HASTE);
 		
 		if (hasteLevel > 0) {
-			player.addPotionEffect(new PotionEffect(PotionEffectType.FAST_DIGGING, Integer.MAX_VALUE, hasteLevel - 1, true, false), true);
+			playerStatus.getPotionEffects().apply(new PotionEffect(PotionEffectType.FAST_DIGGING, Integer.MAX_VALUE, hasteLevel - 1, true, false));
 		}
 	}
 
 
 	public Team findLowestPlayersTeam(Team[] teams) {
 		int[] count = new int[teams.length];
-		for (PlayerStatus playerStatus : playerStatuses.values()) {
-			if (playerStatus.getTeam() != null) {
-				count[playerStatus.getTeam().ordinal()]++;
-			}
+		for (int i = 0; i < teams.length; i++) {
+			count[i] = teamIndex.countPlayers(teams[i]);
 		}
 		return teams[Utils.findSmallestIntIndex(count)];
 	}
 	
 	
 	public int countPlayersByTeam(Team countTeam) {
-		int count = 0;
-		for (PlayerStatus playerStatus : playerStatuses.values()) {
-			if (countTeam == playerStatus.getTeam()) {
-				count++;
-			}
-		}
-		return count;
+		return teamIndex.countPlayers(countTeam);
 	}
 		
 	
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.arena;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+
+import com.gmail.filoghost.bedwars.arena.region.Region;
+import com.gmail.filoghost.bedwars.utils.LongObjectHashMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Trova l'arena che contiene un blocco o una posizione con una sola ricerca per chunk,
+ * invece di controllare la regione di tutte le arene.
+ */
+public class ArenaLocator {
+	
+	private static final Map<World, LongObjectHashMap<Arena[]>> arenasByChunk = Maps.newIdentityHashMap();
+	private static final Location reusableLocation = new Location(null, 0, 0, 0); // Solo nel thread principale
+	
+	
+	public static void register(Arena arena) {
+		Region region = arena.getRegion();
+		LongObjectHashMap<Arena[]> worldIndex = arenasByChunk.computeIfAbsent(region.getWorld(), world -> new LongObjectHashMap<>());
+		
+		for (int chunkX = region.getMinX() >> 4; chunkX <= region.getMaxX() >> 4; chunkX++) {
+			for (int chunkZ = region.getMinZ() >> 4; chunkZ <= region.getMaxZ() >> 4; chunkZ++) {
+				long key = chunkKey(chunkX, chunkZ);
+				Arena[] arenas = worldIndex.get(key);
+				if (arenas == null) {
+					arenas = new Arena[] { arena };
+				} else {
+					// Chunk al confine tra due arene
+					arenas = Arrays.copyOf(arenas, arenas.length + 1);
+					arenas[arenas.length - 1] = arena;
+				}
+				worldIndex.put(key, arenas);
+			}
+		}
+	}
+	
+	
+	public static Arena getArenaAt(Block block) {
+		Arena[] arenas = getCandidates(block.getWorld(), block.getX() >> 4, block.getZ() >> 4);
+		if (arenas != null) {
+			for (Arena arena : arenas) {
+				if (arena.getRegion().isInside(block)) {
+					return arena;
+				}
+			}
+		}
+		return null;
+	}
+	
+	
+	public static Arena getArenaAt(Location location) {
+		Arena[] arenas = getCandidates(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+		if (arenas != null) {
+			for (Arena arena : arenas) {
+				if (arena.getRegion().isInside(location)) {
+					return arena;
+				}
+			}
+		}
+		return null;
+	}
+	
+	
+	public static Arena getArenaAt(Entity entity) {
+		return getArenaAt(entity.getLocation(reusableLocation)); // Evita di creare una Location ad ogni chiamata
+	}
+	
+	
+	private static Arena[] getCandidates(World world, int chunkX, int chunkZ) {
+		LongObjectHashMap<Arena[]> worldIndex = arenasByChunk.get(world);
+		return worldIndex != null ? worldIndex.get(chunkKey(chunkX, chunkZ)) : null;
+	}
+	
+	
+	public static long chunkKey(int chunkX, int chunkZ) {
+		return (long) chunkX << 32 | (chunkZ & 0xFFFFFFFFL);
+	}
+
+}
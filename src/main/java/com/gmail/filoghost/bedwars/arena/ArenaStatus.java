@@ -37,8 +37,8 @@ public enum ArenaStatus {
 
 	LOBBY 	("In attesa"),
 	COMBAT 	("In corso"),
-	ENDING 	("In corso");
-	// Eventualmente STOPPING per indicare il reset
+	ENDING 	("In corso"),
+	RESETTING	("Ripristino");
 	
 	private String name;
 	
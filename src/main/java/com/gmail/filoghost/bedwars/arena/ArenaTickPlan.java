@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.arena;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import com.gmail.filoghost.bedwars.Bedwars;
+import com.gmail.filoghost.bedwars.arena.particles.ParticleBatch;
+import com.gmail.filoghost.bedwars.arena.shop.upgrade.TeamUpgrade;
+import com.gmail.filoghost.bedwars.profiler.TickProfiler;
+import com.gmail.filoghost.bedwars.profiler.TickSection;
+import com.gmail.filoghost.bedwars.settings.MainSettings;
+import com.gmail.filoghost.bedwars.timer.DeferrableWork;
+import com.gmail.filoghost.bedwars.timer.TickBudget;
+import com.gmail.filoghost.bedwars.utils.Utils;
+
+import lombok.AllArgsConstructor;
+import wild.api.world.Particle;
+
+/**
+ * Tick di un'arena diviso in tre fasi:
+ * 1. snapshot(), sul thread principale: aggiorna le zone e ne copia in array gli occupanti, insieme alle posizioni dei giocatori
+ * 2. compute(): decide cosa fare leggendo solo i dati copiati e quelli del plugin, anche in parallelo con le altre arene
+ * 3. apply(), sul thread principale: esegue le azioni decise che richiedono chiamate a Bukkit
+ * Durante compute() il thread principale aspetta la fine del calcolo di tutte le arene, quindi i dati letti non cambiano.
+ */
+public class ArenaTickPlan {
+	
+	private static final int ACTION_SPAWN_EFFECTS = 0;
+	private static final int ACTION_TRAP = 1;
+	
+	private final Arena arena;
+	private final TeamStatus[] teams;
+	private final World world;
+	
+	private boolean active;
+	private boolean checkSpawnEffects; // Ogni mezzo secondo
+	private boolean checkTraps; // Ogni mezzo secondo ma alternato rispetto agli effetti
+	private boolean showInvincibilityParticles; // Spesso
+	
+	// Snapshot
+	private final StatusArray[] spawnEffectsOccupants;
+	private final StatusArray[] trapOccupants;
+	private final StatusArray livePlayers = new StatusArray();
+	private double[] livePositions = new double[16 * 3];
+	private final Location reusableLocation = new Location(null, 0, 0, 0);
+	
+	// Azioni da eseguire sul thread principale
+	private int[] actionTypes = new int[16];
+	private int[] actionTeams = new int[16];
+	private final StatusArray actionPlayers = new StatusArray();
+	private Throwable computeError;
+	
+	// Effetti rimandati dal tick precedente perché era finito il tempo a disposizione
+	private int[] deferredTeams = new int[16];
+	private final StatusArray deferredPlayers = new StatusArray();
+	
+	
+	public ArenaTickPlan(Arena arena) {
+		this.arena = arena;
+		this.teams = arena.getTeamStatuses().toArray(new TeamStatus[0]);
+		this.world = arena.getRegion().getWorld();
+		this.spawnEffectsOccupants = new StatusArray[teams.length];
+		this.trapOccupants = new StatusArray[teams.length];
+		for (int i = 0; i < teams.length; i++) {
+			spawnEffectsOccupants[i] = new StatusArray();
+			trapOccupants[i] = new StatusArray();
+		}
+	}
+	
+	/**
+	 * @return true se c'è qualcosa da calcolare in questo tick
+	 */
+	public boolean snapshot(int ticks) {
+		active = false;
+		if (arena.getArenaStatus() != ArenaStatus.COMBAT) {
+			deferredPlayers.clear();
+			return false;
+		}
+		
+		// Entrata e uscita dalle zone, solo se qualcuno si è spostato
+		long zonesStart = System.nanoTime();
+		arena.getZones().update();
+		arena.getProfiler().add(TickSection.ZONES, zonesStart);
+		
+		// Ogni arena ha uno sfasamento diverso, così il lavoro periodico non cade sempre nello stesso tick
+		int arenaTicks = ticks + arena.getTickOffset();
+		checkSpawnEffects = arenaTicks % 10 == 0;
+		checkTraps = arenaTicks % 10 == 5;
+		showInvincibilityParticles = arenaTicks % 5 == 0 && !Bedwars.getTickTimer().getLoadGovernor().isParticlesDisabled();
+		if (!checkSpawnEffects && !checkTraps && !showInvincibilityParticles) {
+			return false;
+		}
+		
+		for (int i = 0; i < teams.length; i++) {
+			if (checkSpawnEffects) {
+				spawnEffectsOccupants[i].addAll(teams[i].getSpawnEffectsZone().getOccupants());
+			}
+			if (checkTraps) {
+				trapOccupants[i].addAll(teams[i].getTrapZone().getOccupants());
+			}
+		}
+		
+		if (showInvincibilityParticles) {
+			for (TeamStatus teamStatus : teams) {
+				for (PlayerStatus playerStatus : arena.getTeamIndex().getLivePlayers(teamStatus.getTeam())) {
+					int index = livePlayers.size;
+					livePlayers.add(playerStatus);
+					if (livePositions.length < livePlayers.size * 3) {
+						livePositions = Arrays.copyOf(livePositions, livePlayers.items.length * 3);
+					}
+					
+					playerStatus.getPlayer().getLocation(reusableLocation);
+					livePositions[index * 3] = reusableLocation.getX();
+					livePositions[index * 3 + 1] = reusableLocation.getY();
+					livePositions[index * 3 + 2] = reusableLocation.getZ();
+				}
+			}
+			reusableLocation.setWorld(null);
+		}
+		
+		active = true;
+		return true;
+	}
+	
+	/**
+	 * Non chiama metodi di Bukkit, può essere eseguito fuori dal thread principale
+	 */
+	public void compute() {
+		TickProfiler profiler = arena.getProfiler();
+		long sectionStart = System.nanoTime();
+		
+		try {
+			if (checkSpawnEffects) {
+				for (int team = 0; team < teams.length; team++) {
+					TeamStatus teamStatus = teams[team];
+					boolean regen = teamStatus.getUpgradeLevel(TeamUpgrade.SPAWN_REGEN) > 0;
+					boolean resistance = teamStatus.getUpgradeLevel(TeamUpgrade.SPAWN_RESISTANCE) > 0;
+					if (!regen && !resistance) {
+						continue;
+					}
+					
+					StatusArray occupants = spawnEffectsOccupants[team];
+					for (int i = 0; i < occupants.size; i++) {
+						PlayerStatus playerStatus = occupants.items[i];
+						if (playerStatus.isSpectator() || playerStatus.getTeam() != teamStatus.getTeam()) {
+							continue;
+						}
+						
+						// Solo chi ha effetti in scadenza, gli altri non richiedono nessuna chiamata
+						PotionEffectLedger potionEffects = playerStatus.getPotionEffects();
+						if ((regen && potionEffects.needsRefresh(Constants.EFFECT_REGEN, Constants.SPAWN_EFFECTS_REFRESH_TICKS)) ||
+							(resistance && potionEffects.needsRefresh(Constants.EFFECT_RESISTANCE, Constants.SPAWN_EFFECTS_REFRESH_TICKS))) {
+							addAction(ACTION_SPAWN_EFFECTS, team, playerStatus);
+						}
+					}
+				}
+				sectionStart = profiler.add(TickSection.SPAWN_EFFECTS, sectionStart);
+			}
+			
+			if (checkTraps) {
+				// Le trappole scattano all'entrata nella zona, qui vengono controllati i nemici rimasti vicino al letto
+				for (int team = 0; team < teams.length; team++) {
+					TeamStatus teamStatus = teams[team];
+					if (teamStatus.getNextActiveTrap() == null) {
+						continue;
+					}
+					
+					StatusArray occupants = trapOccupants[team];
+					for (int i = 0; i < occupants.size; i++) {
+						PlayerStatus playerStatus = occupants.items[i];
+						if (!playerStatus.isSpectator() && playerStatus.getTeam() != null && playerStatus.getTeam() != teamStatus.getTeam()) {
+							addAction(ACTION_TRAP, team, playerStatus);
+							break; // Una trappola alla volta
+						}
+					}
+				}
+				sectionStart = profiler.add(TickSection.TRAPS, sectionStart);
+			}
+			
+			if (showInvincibilityParticles) {
+				ParticleBatch particles = arena.getParticles();
+				for (int i = 0; i < livePlayers.size; i++) {
+					if (livePlayers.items[i].hasRespawnInvincibility()) {
+						double x = livePositions[i * 3], y = livePositions[i * 3 + 1], z = livePositions[i * 3 + 2];
+						particles.emit(Particle.SPELL, world, x, y, z, 0.3F, 1.0F, 0.3F, 0.0F, 20);
+						particles.emit(Particle.SMOKE, world, x, y, z, 0.3F, 1.2F, 0.3F, 0.0F, 60);
+						particles.emit(Particle.HAPPY_VILLAGER, world, x, y, z, 0.3F, 1.2F, 0.3F, 0.0F, 4);
+					}
+				}
+				profiler.add(TickSection.INVINCIBILITY, sectionStart);
+			}
+			
+		} catch (Throwable t) {
+			// Segnalato sul thread principale
+			computeError = t;
+		}
+	}
+	
+	public void apply() {
+		if (!active && deferredPlayers.size == 0) {
+			return;
+		}
+		active = false;
+		
+		if (computeError != null) {
+			Utils.reportAnomaly("error while computing arena tick", arena, computeError);
+			computeError.printStackTrace();
+			computeError = null;
+		}
+		
+		TickProfiler profiler = arena.getProfiler();
+		TickBudget budget = Bedwars.getTickTimer().getBudget();
+		long sectionStart = System.nanoTime();
+		
+		// Quelli già rimandati vengono eseguiti comunque, se il giocatore è ancora nell'arena
+		if (deferredPlayers.size > 0) {
+			for (int i = 0; i < deferredPlayers.size; i++) {
+				PlayerStatus playerStatus = deferredPlayers.items[i];
+				if (arena.getPlayerStatus(playerStatus.getPlayer()) == playerStatus) {
+					arena.applySpawnEffects(teams[deferredTeams[i]], playerStatus);
+				}
+			}
+			deferredPlayers.clear();
+			sectionStart = profiler.add(TickSection.SPAWN_EFFECTS, sectionStart);
+		}
+		
+		int deferredAmount = 0;
+		for (int i = 0; i < actionPlayers.size; i++) {
+			TeamStatus teamStatus = teams[actionTeams[i]];
+			PlayerStatus playerStatus = actionPlayers.items[i];
+			
+			// I metodi dell'arena ricontrollano le condizioni, che potrebbero essere cambiate per le azioni precedenti
+			if (actionTypes[i] == ACTION_SPAWN_EFFECTS) {
+				if (budget.hasTime()) {
+					arena.applySpawnEffects(teamStatus, playerStatus);
+				} else {
+					// Gli effetti vengono rinnovati prima della scadenza, possono aspettare un tick
+					deferSpawnEffects(actionTeams[i], playerStatus);
+					deferredAmount++;
+				}
+				sectionStart = profiler.add(TickSection.SPAWN_EFFECTS, sectionStart);
+				
+			} else if (actionTypes[i] == ACTION_TRAP) {
+				arena.tryTriggerTrap(teamStatus, playerStatus);
+				sectionStart = profiler.add(TickSection.TRAPS, sectionStart);
+			}
+		}
+		
+		if (deferredAmount > 0) {
+			budget.recordDeferred(DeferrableWork.SPAWN_EFFECTS, deferredAmount);
+		}
+		
+		// Non tiene in memoria i giocatori fino al prossimo tick
+		actionPlayers.clear();
+		livePlayers.clear();
+		for (int i = 0; i < teams.length; i++) {
+			spawnEffectsOccupants[i].clear();
+			trapOccupants[i].clear();
+		}
+	}
+	
+	private void deferSpawnEffects(int team, PlayerStatus playerStatus) {
+		int index = deferredPlayers.size;
+		deferredPlayers.add(playerStatus);
+		if (deferredTeams.length <= index) {
+			deferredTeams = Arrays.copyOf(deferredTeams, deferredPlayers.items.length);
+		}
+		deferredTeams[index] = team;
+	}
+	
+	private void addAction(int type, int team, PlayerStatus playerStatus) {
+		int index = actionPlayers.size;
+		actionPlayers.add(playerStatus);
+		if (actionTypes.length <= index) {
+			actionTypes = Arrays.copyOf(actionTypes, actionPlayers.items.length);
+			actionTeams = Arrays.copyOf(actionTeams, actionPlayers.items.length);
+		}
+		actionTypes[index] = type;
+		actionTeams[index] = team;
+	}
+	
+	
+	/**
+	 * Esegue compute() di tutte le arene, in parallelo se sono abbastanza da compensare il costo della sincronizzazione
+	 */
+	public static void computeAll(List<ArenaTickPlan> plans, ForkJoinPool pool) {
+		if (plans.size() >= MainSettings.tick_parallelMinArenas && pool.getParallelism() > 1) {
+			pool.invoke(new ComputeAction(plans, 0, plans.size()));
+		} else {
+			for (ArenaTickPlan plan : plans) {
+				plan.compute();
+			}
+		}
+	}
+	
+	
+	@AllArgsConstructor
+	private static class ComputeAction extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final List<ArenaTickPlan> plans;
+		private final int from, to;
+		
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				if (to > from) {
+					plans.get(from).compute();
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ComputeAction(plans, from, middle), new ComputeAction(plans, middle, to));
+			}
+		}
+	}
+	
+	
+	private static class StatusArray {
+		
+		private PlayerStatus[] items = new PlayerStatus[16];
+		private int size;
+		
+		private void add(PlayerStatus playerStatus) {
+			if (size == items.length) {
+				items = Arrays.copyOf(items, size * 2);
+			}
+			items[size++] = playerStatus;
+		}
+		
+		private void addAll(Iterable<PlayerStatus> playerStatuses) {
+			for (PlayerStatus playerStatus : playerStatuses) {
+				add(playerStatus);
+			}
+		}
+		
+		private void clear() {
+			Arrays.fill(items, 0, size, null);
+			size = 0;
+		}
+	}
+
+}
@@ -41,6 +41,7 @@ public class Constants {
 	
 	public static final PotionEffect EFFECT_REGEN = new PotionEffect(PotionEffectType.REGENERATION, 3 * 20 + 19, 0, true, false);
 	public static final PotionEffect EFFECT_RESISTANCE = new PotionEffect(PotionEffectType.DAMAGE_RESISTANCE, 3 * 20 + 19, 0, true, false);
+	public static final int SPAWN_EFFECTS_REFRESH_TICKS = 20; // Rinnovati solo quando mancano meno di 20 tick, i controlli sono ogni 10
 	
 	public static final Sound SOUND_BED_DESTROY = Sound.ENDERDRAGON_GROWL;
 	
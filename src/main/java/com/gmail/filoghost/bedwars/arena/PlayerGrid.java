@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.arena;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import com.gmail.filoghost.bedwars.Bedwars;
+import com.gmail.filoghost.bedwars.arena.region.Region;
+
+/**
+ * Griglia di celle 8x8 (senza altezza) con le posizioni dei giocatori vivi, ricostruita al massimo una volta per tick
+ * alla prima richiesta. Le ricerche per distanza controllano solo le celle vicine al punto, invece di tutti i giocatori.
+ */
+public class PlayerGrid {
+	
+	private static final int CELL_SHIFT = 3;
+	
+	private final World world;
+	private final int minCellX, minCellZ;
+	private final int cellsX, cellsZ;
+	private final Collection<PlayerStatus> playerStatuses;
+	
+	private final int[] cellHeads; // Primo giocatore di ogni cella (-1 = vuota)
+	private int[] nextInCell = new int[16];
+	private PlayerStatus[] entries = new PlayerStatus[16];
+	private double[] positions = new double[16 * 3]; // x, y, z di ogni giocatore
+	private int entriesCount;
+	
+	private final Location reusableLocation = new Location(null, 0, 0, 0); // Evita di creare una Location per ogni giocatore
+	private int lastUpdateTick = -1;
+	
+	
+	public PlayerGrid(Region region, Collection<PlayerStatus> playerStatuses) {
+		this.world = region.getWorld();
+		this.minCellX = region.getMinX() >> CELL_SHIFT;
+		this.minCellZ = region.getMinZ() >> CELL_SHIFT;
+		this.cellsX = (region.getMaxX() >> CELL_SHIFT) - minCellX + 1;
+		this.cellsZ = (region.getMaxZ() >> CELL_SHIFT) - minCellZ + 1;
+		this.playerStatuses = playerStatuses;
+		this.cellHeads = new int[cellsX * cellsZ];
+	}
+	
+	/**
+	 * @return il primo giocatore entro radius dal centro che rispetta il filtro, o null
+	 */
+	public PlayerStatus findNear(Location center, double radius, Predicate<PlayerStatus> filter) {
+		ensureUpdated();
+		double radiusSquared = radius * radius;
+		
+		int fromCellX = cellX(center.getX() - radius), toCellX = cellX(center.getX() + radius);
+		int fromCellZ = cellZ(center.getZ() - radius), toCellZ = cellZ(center.getZ() + radius);
+		
+		for (int cellZ = fromCellZ; cellZ <= toCellZ; cellZ++) {
+			for (int cellX = fromCellX; cellX <= toCellX; cellX++) {
+				for (int entry = cellHeads[cellZ * cellsX + cellX]; entry >= 0; entry = nextInCell[entry]) {
+					if (distanceSquared(entry, center) <= radiusSquared && filter.test(entries[entry])) {
+						return entries[entry];
+					}
+				}
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Esegue l'azione per ogni giocatore vivo entro radius dal centro
+	 */
+	public void forEachNear(Location center, double radius, Consumer<PlayerStatus> action) {
+		findNear(center, radius, playerStatus -> {
+			action.accept(playerStatus);
+			return false;
+		});
+	}
+	
+	private void ensureUpdated() {
+		int currentTick = Bedwars.getTickTimer().getTicks();
+		if (currentTick == lastUpdateTick) {
+			return;
+		}
+		lastUpdateTick = currentTick;
+		
+		Arrays.fill(cellHeads, -1);
+		Arrays.fill(entries, 0, entriesCount, null); // Non tiene in memoria i giocatori usciti
+		entriesCount = 0;
+		
+		for (PlayerStatus playerStatus : playerStatuses) {
+			if (playerStatus.isSpectator() || playerStatus.getTeam() == null) {
+				continue;
+			}
+			
+			Player player = playerStatus.getPlayer();
+			if (player.getWorld() != world) {
+				continue;
+			}
+			
+			if (entriesCount == entries.length) {
+				entries = Arrays.copyOf(entries, entriesCount * 2);
+				nextInCell = Arrays.copyOf(nextInCell, entriesCount * 2);
+				positions = Arrays.copyOf(positions, entriesCount * 2 * 3);
+			}
+			
+			player.getLocation(reusableLocation);
+			int entry = entriesCount++;
+			entries[entry] = playerStatus;
+			positions[entry * 3] = reusableLocation.getX();
+			positions[entry * 3 + 1] = reusableLocation.getY();
+			positions[entry * 3 + 2] = reusableLocation.getZ();
+			
+			// I giocatori fuori dalla regione finiscono nelle celle ai bordi, la distanza viene comunque controllata
+			int cellIndex = cellZ(reusableLocation.getZ()) * cellsX + cellX(reusableLocation.getX());
+			nextInCell[entry] = cellHeads[cellIndex];
+			cellHeads[cellIndex] = entry;
+		}
+		
+		reusableLocation.setWorld(null); // Non tiene in memoria il mondo
+	}
+	
+	private double distanceSquared(int entry, Location center) {
+		double diffX = positions[entry * 3] - center.getX();
+		double diffY = positions[entry * 3 + 1] - center.getY();
+		double diffZ = positions[entry * 3 + 2] - center.getZ();
+		return diffX * diffX + diffY * diffY + diffZ * diffZ;
+	}
+	
+	private int cellX(double x) {
+		return Math.min(Math.max((((int) Math.floor(x)) >> CELL_SHIFT) - minCellX, 0), cellsX - 1);
+	}
+	
+	private int cellZ(double z) {
+		return Math.min(Math.max((((int) Math.floor(z)) >> CELL_SHIFT) - minCellZ, 0), cellsZ - 1);
+	}
+
+}
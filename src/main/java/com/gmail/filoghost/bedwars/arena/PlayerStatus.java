@@ -36,12 +36,14 @@ import com.gmail.filoghost.bedwars.arena.shop.Trap;
 import com.gmail.filoghost.bedwars.arena.shop.upgrade.PlayerUpgrade;
 import com.gmail.filoghost.bedwars.arena.shop.upgrade.UpgradableStatus;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
 public class PlayerStatus extends UpgradableStatus<PlayerUpgrade> {
 
 	@Getter private final Player player;
+	@Getter private final PotionEffectLedger potionEffects;
 	@Getter private Team team;
 	// Nota: un player senza team è per forza uno spettatore oppure la partita deve ancora cominciare
 	@Getter private boolean spectator;
@@ -51,16 +53,26 @@ public class PlayerStatus extends UpgradableStatus<PlayerUpgrade> {
 	private int noTrapsUntilTicks;
 	private int invulnerableUntilTicks;
 	
+	@Getter(AccessLevel.PACKAGE) @Setter(AccessLevel.PACKAGE) private TeamIndex teamIndex; // Dell'arena, null se il giocatore non ne fa parte
+	
 	public PlayerStatus(Player player) {
 		this.player = player;
+		this.potionEffects = new PotionEffectLedger(player);
 	}
 	
 	public void setTeam(Team team) {
+		Team previousTeam = this.team;
 		this.team = team;
+		if (teamIndex != null) {
+			teamIndex.update(this, previousTeam);
+		}
 	}
 	
 	public void setSpectator(Player player, boolean spectator) {
 		this.spectator = spectator;
+		if (teamIndex != null) {
+			teamIndex.update(this, team);
+		}
 		VanishManager.setHidden(player, spectator);
 	}
 
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.arena;
+
+import java.util.Map;
+
+import org.bukkit.entity.Player;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
+
+import com.gmail.filoghost.bedwars.Bedwars;
+import com.google.common.collect.Maps;
+
+/**
+ * Effetti applicati dal plugin a un giocatore, con il tick di scadenza. Serve a non inviare di nuovo un effetto
+ * (e il relativo pacchetto) finché quello attivo non sta per scadere.
+ * Nota: gli effetti rimossi dall'esterno vanno segnalati con clear(), altrimenti sono considerati ancora attivi.
+ */
+public class PotionEffectLedger {
+	
+	private final Player player;
+	private final Map<PotionEffectType, ActiveEffect> activeEffects = Maps.newHashMap();
+	
+	public PotionEffectLedger(Player player) {
+		this.player = player;
+	}
+	
+	/**
+	 * Applica l'effetto solo se non ne è già attivo uno uguale o più forte che durerà almeno quanto il nuovo
+	 */
+	public boolean apply(PotionEffect effect) {
+		// Gli effetti infiniti (durata massima) non vanno mai rinnovati
+		return apply(effect, effect.getDuration() == Integer.MAX_VALUE ? 0 : effect.getDuration());
+	}
+	
+	/**
+	 * Applica l'effetto solo se non ne è già attivo uno uguale o più forte con più di refreshBelowTicks rimanenti
+	 * 
+	 * @return true se l'effetto è stato applicato
+	 */
+	public boolean apply(PotionEffect effect, int refreshBelowTicks) {
+		if (!needsRefresh(effect, refreshBelowTicks)) {
+			return false;
+		}
+		
+		player.addPotionEffect(effect, true);
+		
+		ActiveEffect activeEffect = activeEffects.get(effect.getType());
+		if (activeEffect == null) {
+			activeEffect = new ActiveEffect();
+			activeEffects.put(effect.getType(), activeEffect);
+		}
+		activeEffect.amplifier = effect.getAmplifier();
+		activeEffect.expiryTick = currentTick() + effect.getDuration();
+		return true;
+	}
+	
+	public boolean needsRefresh(PotionEffect effect, int refreshBelowTicks) {
+		ActiveEffect activeEffect = activeEffects.get(effect.getType());
+		if (activeEffect == null) {
+			return true;
+		}
+		
+		long remainingTicks = activeEffect.expiryTick - currentTick();
+		if (remainingTicks <= 0) {
+			return true;
+		}
+		
+		if (activeEffect.amplifier != effect.getAmplifier()) {
+			// Uno più debole viene sostituito, uno più forte viene lasciato finché non scade
+			return activeEffect.amplifier < effect.getAmplifier();
+		}
+		
+		return remainingTicks <= refreshBelowTicks;
+	}
+	
+	/**
+	 * Da chiamare quando gli effetti del giocatore vengono rimossi
+	 */
+	public void clear() {
+		activeEffects.clear();
+	}
+	
+	private static long currentTick() {
+		return Bedwars.getTickTimer().getTicks();
+	}
+	
+	
+	private static class ActiveEffect {
+		
+		private int amplifier;
+		private long expiryTick; // Long per gli effetti con durata infinita
+		
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.arena;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Giocatori dell'arena divisi per team, aggiornati da PlayerStatus quando cambiano team o diventano spettatori.
+ * Le liste sono copy-on-write perché vengono lette anche dalla chat asincrona, e cambiano solo a entrate, uscite e morti.
+ */
+public class TeamIndex {
+	
+	private final Map<Team, TeamPlayers> playersByTeam;
+	private final TeamPlayers noTeamPlayers;
+	
+	public TeamIndex() {
+		// Creati subito per tutti i team, così la mappa non viene mai modificata mentre la chat la legge
+		playersByTeam = new EnumMap<>(Team.class);
+		for (Team team : Team.values()) {
+			playersByTeam.put(team, new TeamPlayers());
+		}
+		noTeamPlayers = new TeamPlayers();
+	}
+	
+	void add(PlayerStatus playerStatus) {
+		playerStatus.setTeamIndex(this);
+		getTeamPlayers(playerStatus.getTeam()).add(playerStatus, playerStatus.isSpectator());
+	}
+	
+	void remove(PlayerStatus playerStatus) {
+		if (playerStatus.getTeamIndex() == this) {
+			getTeamPlayers(playerStatus.getTeam()).remove(playerStatus);
+			playerStatus.setTeamIndex(null);
+		}
+	}
+	
+	void update(PlayerStatus playerStatus, @Nullable Team previousTeam) {
+		getTeamPlayers(previousTeam).remove(playerStatus);
+		getTeamPlayers(playerStatus.getTeam()).add(playerStatus, playerStatus.isSpectator());
+	}
+	
+	void clear() {
+		for (TeamPlayers teamPlayers : playersByTeam.values()) {
+			teamPlayers.clear();
+		}
+		noTeamPlayers.clear();
+	}
+	
+	/**
+	 * @return tutti i giocatori del team, vivi e spettatori (null = giocatori senza team)
+	 */
+	public List<PlayerStatus> getPlayers(@Nullable Team team) {
+		return getTeamPlayers(team).allView;
+	}
+	
+	public List<PlayerStatus> getLivePlayers(@Nullable Team team) {
+		return getTeamPlayers(team).liveView;
+	}
+	
+	public List<PlayerStatus> getSpectators(@Nullable Team team) {
+		return getTeamPlayers(team).spectatorsView;
+	}
+	
+	public int countPlayers(@Nullable Team team) {
+		return getTeamPlayers(team).all.size();
+	}
+	
+	public int countLivePlayers(@Nullable Team team) {
+		return getTeamPlayers(team).live.size();
+	}
+	
+	private TeamPlayers getTeamPlayers(@Nullable Team team) {
+		return team != null ? playersByTeam.get(team) : noTeamPlayers;
+	}
+	
+	
+	private static class TeamPlayers {
+		
+		private final List<PlayerStatus> all = Lists.newCopyOnWriteArrayList();
+		private final List<PlayerStatus> live = Lists.newCopyOnWriteArrayList();
+		private final List<PlayerStatus> spectators = Lists.newCopyOnWriteArrayList();
+		
+		private final List<PlayerStatus> allView = Collections.unmodifiableList(all);
+		private final List<PlayerStatus> liveView = Collections.unmodifiableList(live);
+		private final List<PlayerStatus> spectatorsView = Collections.unmodifiableList(spectators);
+		
+		private void add(PlayerStatus playerStatus, boolean spectator) {
+			all.add(playerStatus);
+			(spectator ? spectators : live).add(playerStatus);
+		}
+		
+		private void remove(PlayerStatus playerStatus) {
+			all.remove(playerStatus);
+			live.remove(playerStatus);
+			spectators.remove(playerStatus);
+		}
+		
+		private void clear() {
+			for (PlayerStatus playerStatus : all) {
+				playerStatus.setTeamIndex(null);
+			}
+			all.clear();
+			live.clear();
+			spectators.clear();
+		}
+	}
+
+}
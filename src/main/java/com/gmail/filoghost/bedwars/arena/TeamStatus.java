@@ -47,6 +47,8 @@ import com.gmail.filoghost.bedwars.arena.shop.upgrade.UpgradableStatus;
 import com.gmail.filoghost.bedwars.arena.spawners.Spawner;
 import com.gmail.filoghost.bedwars.arena.specialization.SpecializationType;
 import com.gmail.filoghost.bedwars.arena.specialization.SpecializationPoll;
+import com.gmail.filoghost.bedwars.arena.zones.Zone;
+import com.gmail.filoghost.bedwars.arena.zones.ZoneHandler;
 import com.gmail.filoghost.bedwars.hud.shop.ShopMenu;
 import com.gmail.filoghost.bedwars.utils.Utils;
 import com.google.common.collect.Lists;
@@ -63,6 +65,8 @@ public class TeamStatus extends UpgradableStatus<TeamUpgrade> {
 	@Getter private final int spawnX, spawnY, spawnZ;
 	private final Block bedHead, bedFeet;
 	@Getter private final Location bedCenter;
+	@Getter private final Zone trapZone; // Nemici vicini al letto
+	@Getter private final Zone spawnEffectsZone; // Alleati che ricevono rigenerazione e resistenza
 	@Getter private boolean bedDestroyed;
 	@Getter private ShopMenu individualShop;
 	@Getter private ShopMenu teamShop;
@@ -103,6 +107,21 @@ public class TeamStatus extends UpgradableStatus<TeamUpgrade> {
 			Utils.reportAnomaly("bed is not on the same X or Z axis (location: " + x + " " + y + " " + z + ")");
 		}
 		bedCenter = new Location(bedFeet.getWorld(), x, y, z);
+		
+		trapZone = arena.getZones().register(bedCenter, 10.0, new ZoneHandler() {
+			
+			@Override
+			public void onEnter(PlayerStatus playerStatus) {
+				arena.tryTriggerTrap(TeamStatus.this, playerStatus);
+			}
+		});
+		spawnEffectsZone = arena.getZones().register(bedCenter, 15.0, new ZoneHandler() {
+			
+			@Override
+			public void onEnter(PlayerStatus playerStatus) {
+				arena.applySpawnEffects(TeamStatus.this, playerStatus);
+			}
+		});
 	}
 	
 	public boolean isBed(Block block) {
@@ -158,7 +177,10 @@ public class TeamStatus extends UpgradableStatus<TeamUpgrade> {
 		teamChestsToRefresh.clear();
 		
 		specialization = null;
-		activeSpecializationPoll = null;
+		if (activeSpecializationPoll != null) {
+			activeSpecializationPoll.cancel();
+			activeSpecializationPoll = null;
+		}
 	}
 	
 	private void setBedBlock(Block bedBlock, Bed data) {
@@ -28,14 +28,11 @@
  */
 package com.gmail.filoghost.bedwars.arena.entities;
 
-import java.util.List;
-
 import org.bukkit.entity.Entity;
-import org.bukkit.metadata.FixedMetadataValue;
-import org.bukkit.metadata.MetadataValue;
+import org.bukkit.entity.Projectile;
 
-import com.gmail.filoghost.bedwars.Bedwars;
 import com.gmail.filoghost.bedwars.arena.Arena;
+import com.gmail.filoghost.bedwars.arena.ArenaLocator;
 import com.gmail.filoghost.bedwars.arena.Team;
 
 import lombok.Getter;
@@ -45,25 +42,36 @@ import lombok.NonNull;
 @Getter
 public class EntityOwnership {
 	
+	private final Entity entity;
 	private final Arena arena;
 	private final Team team; // Può essere null se l'entità attacca tutti (ad esempio il boss)
 	
-	private EntityOwnership(Arena arena, Team team) {
+	private EntityOwnership(Entity entity, Arena arena, Team team) {
+		this.entity = entity;
 		this.arena = arena;
 		this.team = team;
 	}
 	
 	public static void set(Entity entity, @NonNull Arena arena, Team team) {
-		entity.setMetadata("ownership", new FixedMetadataValue(Bedwars.get(), new EntityOwnership(arena, team)));
+		arena.getEntityRegistry().setOwnership(new EntityOwnership(entity, arena, team));
 	}
 	
 	public static EntityOwnership get(Entity entity) {
-		List<MetadataValue> metadata = entity.getMetadata("ownership");
-		if (metadata.isEmpty()) {
-			return null;
+		// I proiettili possono essere usciti dai confini dell'arena (ad esempio una palla di fuoco)
+		if (entity instanceof Projectile) {
+			return EntityRegistry.getProjectileOwnership(entity);
+		}
+		
+		// Le altre entità si trovano nella regione dell'arena a cui appartengono
+		Arena arena = ArenaLocator.getArenaAt(entity);
+		return arena != null ? arena.getEntityRegistry().getOwnership(entity) : null;
+	}
+	
+	public static void remove(Entity entity) {
+		EntityOwnership ownership = get(entity);
+		if (ownership != null) {
+			ownership.arena.getEntityRegistry().remove(entity);
 		}
-			
-		return (EntityOwnership) metadata.get(0).value();
 	}
 
 }
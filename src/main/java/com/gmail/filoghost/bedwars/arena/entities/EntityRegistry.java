@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.arena.entities;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Projectile;
+
+import com.gmail.filoghost.bedwars.utils.LongObjectHashMap;
+
+/**
+ * Proprietari delle entità di un'arena, indicizzati per id dell'entità.
+ * I proiettili possono uscire dalla regione dell'arena, quindi sono indicizzati anche in una mappa comune a tutte le arene.
+ */
+public class EntityRegistry {
+	
+	private static final LongObjectHashMap<EntityOwnership> projectilesByEntityId = new LongObjectHashMap<>();
+	
+	private final LongObjectHashMap<EntityOwnership> ownershipByEntityId = new LongObjectHashMap<>();
+	
+	
+	public static EntityOwnership getProjectileOwnership(Entity entity) {
+		return projectilesByEntityId.get(entity.getEntityId());
+	}
+	
+	public void setOwnership(EntityOwnership ownership) {
+		Entity entity = ownership.getEntity();
+		ownershipByEntityId.put(entity.getEntityId(), ownership);
+		if (entity instanceof Projectile) {
+			projectilesByEntityId.put(entity.getEntityId(), ownership);
+		}
+	}
+	
+	public EntityOwnership getOwnership(Entity entity) {
+		return ownershipByEntityId.get(entity.getEntityId());
+	}
+	
+	public void remove(Entity entity) {
+		ownershipByEntityId.remove(entity.getEntityId());
+		if (entity instanceof Projectile) {
+			projectilesByEntityId.remove(entity.getEntityId());
+		}
+	}
+	
+	/**
+	 * Rimuove le entità morte o rimosse senza un evento
+	 */
+	public void purgeDead() {
+		if (ownershipByEntityId.size() > 0) {
+			ownershipByEntityId.removeIf(ownership -> {
+				Entity entity = ownership.getEntity();
+				if (!entity.isDead()) {
+					return false;
+				}
+				
+				if (entity instanceof Projectile) {
+					projectilesByEntityId.remove(entity.getEntityId());
+				}
+				return true;
+			});
+		}
+	}
+	
+	public void clear() {
+		if (projectilesByEntityId.size() > 0) {
+			projectilesByEntityId.removeIf(ownership -> ownership.getArena().getEntityRegistry() == this);
+		}
+		ownershipByEntityId.clear();
+	}
+
+}
@@ -406,7 +406,7 @@ public class EventManager {
 							damager = (Entity) projectileSource;
 						}
 					}
-					EntityOwnership ownership = EntityOwnership.get(damager);
+					EntityOwnership ownership = arena.getEntityRegistry().getOwnership(damager);
 					String ownershipColor = (ownership != null && ownership.getTeam() != null) ? ownership.getTeam().getChatColor().toString() : "";
 					
 					deathMessage = "è stato ucciso " + ownershipColor + (damager.getType() == EntityType.WITHER ? "dal boss" : ("da " + Translation.of(damager.getType())));
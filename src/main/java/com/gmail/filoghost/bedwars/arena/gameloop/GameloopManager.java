@@ -76,18 +76,16 @@ public class GameloopManager {
 		}
 		
 		Team winnerTeam = null;
-		for (PlayerStatus playerStatus : arena.getPlayerStatuses()) {
-			if (playerStatus.getTeam() == null) {
+		for (Team team : arena.getTeams()) {
+			if (arena.countPlayersByTeam(team) == 0) {
 				continue;
 			}
 			
 			if (winnerTeam == null) {
-				winnerTeam = playerStatus.getTeam();
+				winnerTeam = team;
 			} else {
-				if (winnerTeam != playerStatus.getTeam()) {
-					// Almeno un team diverso
-					return;
-				}
+				// Almeno un team diverso
+				return;
 			}
 		}
 		
@@ -96,6 +94,7 @@ public class GameloopManager {
 		SQLManager.insertAnalyticsAsync("duration", String.valueOf(duration), arena);
 		
 		arena.setArenaStatus(ArenaStatus.ENDING);
+		arena.setSpawnersActive(false);
 		arena.broadcast(ChatColor.GRAY + "Il team " + winnerTeam.getChatColor() + winnerTeam.getNameSingular() + ChatColor.GRAY + " ha vinto la partita!");
 		
 		// Statistiche sui rate di vittoria e di sconfitta delle specializzazioni
@@ -115,6 +114,9 @@ public class GameloopManager {
 			}
 		}
 		
+		// Le statistiche della partita vengono salvate subito, senza aspettare il prossimo salvataggio periodico
+		Bedwars.flushStats();
+		
 		cancelCombatCountdown();
 		startWinCountdown();
 	}
@@ -154,12 +156,7 @@ public class GameloopManager {
 		lobbyCountdownTimer = null;
 		
 		// Segna i giocatori senza team
-		List<PlayerStatus> noTeamPlayers = Lists.newArrayList();
-		for (PlayerStatus playerStatus : arena.getPlayerStatuses()) {
-			if (playerStatus.getTeam() == null) {
-				noTeamPlayers.add(playerStatus);
-			}
-		}
+		List<PlayerStatus> noTeamPlayers = Lists.newArrayList(arena.getTeamIndex().getPlayers(null));
 		Collections.shuffle(noTeamPlayers);
 		
 		// Assegna un team a tutti
@@ -169,6 +166,7 @@ public class GameloopManager {
 		}
 		
 		arena.setArenaStatus(ArenaStatus.COMBAT);
+		arena.setSpawnersActive(true);
 		arena.getScoreboard().displayGame(arena.getTeams());
 		for (Team team : arena.getTeams()) {
 			arena.getScoreboard().setTeamStatus(team, false, arena.countPlayersByTeam(team));
@@ -283,12 +281,12 @@ public class GameloopManager {
 	
 	private void onWinCountdown(int seconds) {
 		// Lancia fuochi di artificio
-		for (PlayerStatus playerStatus : arena.getPlayerStatuses()) {
-			if (!playerStatus.isSpectator() && playerStatus.getTeam() != null) {
+		for (Team team : arena.getTeams()) {
+			for (PlayerStatus playerStatus : arena.getTeamIndex().getLivePlayers(team)) {
 				// Giocatore del team vincente
 				Player player = playerStatus.getPlayer();
 				Firework firework = (Firework) player.getWorld().spawnEntity(Utils.getRandomAround(player), EntityType.FIREWORK);
-		        firework.setFireworkMeta(playerStatus.getTeam().getWinningFireworkMeta());
+		        firework.setFireworkMeta(team.getWinningFireworkMeta());
 			}
 		}
 	}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.arena.particles;
+
+import java.util.List;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import com.google.common.collect.Lists;
+
+import lombok.Getter;
+import wild.api.world.Particle;
+
+/**
+ * Particelle di un'arena richieste durante il tick, inviate tutte insieme da ParticleDispatcher a fine tick.
+ * Gli oggetti Emission vengono riutilizzati tra un tick e l'altro.
+ */
+public class ParticleBatch {
+	
+	private final List<Emission> emissions = Lists.newArrayList();
+	@Getter private int size;
+	
+	public void emit(Particle particle, Location location, float offsetX, float offsetY, float offsetZ, float speed, int amount) {
+		emit(particle, location.getWorld(), location.getX(), location.getY(), location.getZ(), offsetX, offsetY, offsetZ, speed, amount);
+	}
+	
+	public void emit(Particle particle, World world, double x, double y, double z, float offsetX, float offsetY, float offsetZ, float speed, int amount) {
+		Emission emission;
+		if (size < emissions.size()) {
+			emission = emissions.get(size);
+		} else {
+			emission = new Emission();
+			emissions.add(emission);
+		}
+		size++;
+		
+		emission.particle = particle;
+		emission.world = world;
+		emission.x = x;
+		emission.y = y;
+		emission.z = z;
+		emission.offsetX = offsetX;
+		emission.offsetY = offsetY;
+		emission.offsetZ = offsetZ;
+		emission.speed = speed;
+		emission.amount = amount;
+	}
+	
+	Emission get(int index) {
+		return emissions.get(index);
+	}
+	
+	void clear() {
+		for (int i = 0; i < size; i++) {
+			emissions.get(i).world = null; // Non tiene in memoria il mondo
+		}
+		size = 0;
+	}
+	
+	
+	static class Emission {
+		
+		Particle particle;
+		World world;
+		double x, y, z;
+		float offsetX, offsetY, offsetZ;
+		float speed;
+		int amount;
+		
+	}
+
+}
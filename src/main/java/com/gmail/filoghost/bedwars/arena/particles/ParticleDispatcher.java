@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.arena.particles;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import com.gmail.filoghost.bedwars.arena.Arena;
+import com.gmail.filoghost.bedwars.arena.particles.ParticleBatch.Emission;
+import com.gmail.filoghost.bedwars.nms.ParticlePacket;
+import com.gmail.filoghost.bedwars.settings.MainSettings;
+
+/**
+ * Invia a fine tick le particelle di tutte le arene, solo ai giocatori della stessa arena abbastanza vicini.
+ * Ogni pacchetto viene creato una sola volta e condiviso tra chi lo vede. Se le particelle richieste superano
+ * il limite per tick, la quantità di ogni emissione viene ridotta in proporzione invece di scartarne alcune.
+ */
+public class ParticleDispatcher {
+	
+	private static final double VIEW_DISTANCE_SQUARED = 32 * 32; // Come le particelle inviate dal server vanilla
+	
+	private static Player[] viewers = new Player[16];
+	private static World[] viewerWorlds = new World[16];
+	private static double[] viewerPositions = new double[16 * 3];
+	private static int viewersCount;
+	private static final Location reusableLocation = new Location(null, 0, 0, 0);
+	
+	
+	public static void flush(Collection<Arena> arenas) {
+		// Prima conta le particelle che verrebbero inviate, per distribuire il limite tra tutte le arene
+		long requested = 0;
+		for (Arena arena : arenas) {
+			requested += dispatch(arena, 1.0, false);
+		}
+		
+		double scale = requested > MainSettings.particles_maxPerTick ? (double) MainSettings.particles_maxPerTick / requested : 1.0;
+		for (Arena arena : arenas) {
+			if (requested > 0) {
+				dispatch(arena, scale, true);
+			}
+			arena.getParticles().clear();
+		}
+		
+		Arrays.fill(viewers, 0, viewersCount, null);
+		Arrays.fill(viewerWorlds, 0, viewersCount, null);
+		viewersCount = 0;
+	}
+	
+	/**
+	 * @return il numero di particelle inviate (o da inviare) ai giocatori dell'arena
+	 */
+	private static long dispatch(Arena arena, double scale, boolean send) {
+		ParticleBatch batch = arena.getParticles();
+		if (batch.getSize() == 0) {
+			return 0;
+		}
+		
+		loadViewers(arena.getPlayers());
+		long total = 0;
+		
+		for (int i = 0; i < batch.getSize(); i++) {
+			Emission emission = batch.get(i);
+			int amount = send ? scaleAmount(emission.amount, scale) : emission.amount;
+			if (amount <= 0) {
+				continue;
+			}
+			
+			ParticlePacket packet = null; // Creato solo se qualcuno lo vede
+			
+			for (int viewer = 0; viewer < viewersCount; viewer++) {
+				if (viewerWorlds[viewer] != emission.world) {
+					continue;
+				}
+				
+				double diffX = viewerPositions[viewer * 3] - emission.x;
+				double diffY = viewerPositions[viewer * 3 + 1] - emission.y;
+				double diffZ = viewerPositions[viewer * 3 + 2] - emission.z;
+				if (diffX * diffX + diffY * diffY + diffZ * diffZ > VIEW_DISTANCE_SQUARED) {
+					continue;
+				}
+				
+				total += amount;
+				if (send) {
+					if (packet == null) {
+						packet = new ParticlePacket(emission.particle, emission.x, emission.y, emission.z,
+								emission.offsetX, emission.offsetY, emission.offsetZ, emission.speed, amount);
+					}
+					packet.send(viewers[viewer]);
+				}
+			}
+		}
+		
+		return total;
+	}
+	
+	private static void loadViewers(Collection<Player> players) {
+		if (viewers.length < players.size()) {
+			int length = Math.max(players.size(), viewers.length * 2);
+			viewers = Arrays.copyOf(viewers, length);
+			viewerWorlds = Arrays.copyOf(viewerWorlds, length);
+			viewerPositions = Arrays.copyOf(viewerPositions, length * 3);
+		}
+		
+		viewersCount = 0;
+		for (Player player : players) {
+			if (viewersCount == viewers.length) {
+				break; // La collezione è cambiata nel frattempo
+			}
+			
+			player.getLocation(reusableLocation);
+			viewers[viewersCount] = player;
+			viewerWorlds[viewersCount] = reusableLocation.getWorld();
+			viewerPositions[viewersCount * 3] = reusableLocation.getX();
+			viewerPositions[viewersCount * 3 + 1] = reusableLocation.getY();
+			viewerPositions[viewersCount * 3 + 2] = reusableLocation.getZ();
+			viewersCount++;
+		}
+		reusableLocation.setWorld(null);
+	}
+	
+	private static int scaleAmount(int amount, double scale) {
+		if (scale >= 1.0) {
+			return amount;
+		}
+		
+		// Arrotonda in modo casuale, così in media viene rispettata la proporzione anche con poche particelle
+		double scaled = amount * scale;
+		int whole = (int) scaled;
+		return whole + (ThreadLocalRandom.current().nextDouble() < scaled - whole ? 1 : 0);
+	}
+
+}
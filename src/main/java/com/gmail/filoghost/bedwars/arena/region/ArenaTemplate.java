@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.arena.region;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import lombok.Getter;
+
+/**
+ * Copia completa dei blocchi di una regione, salvata su file e letta tramite memory-mapping.
+ * 
+ * Formato: header, tabella degli offset delle sezioni, poi per ogni sezione 16x16x16
+ * una palette di stati (id << 4 | data) e gli indici nella palette impacchettati in long.
+ */
+public class ArenaTemplate {
+	
+	private static final int MAGIC = 0x42575431; // "BWT1"
+	
+	public static final int SECTION_SHIFT = 4;
+	public static final int SECTION_MASK = 15;
+	public static final int SECTION_VOLUME = 4096;
+	
+	private static final int HEADER_SIZE = 4 * 10;
+	
+	private final MappedByteBuffer buffer; // Fuori dall'heap, le pagine vengono caricate dal sistema operativo quando servono
+	@Getter private final int minX, minY, minZ;
+	@Getter private final int sizeX, sizeY, sizeZ;
+	@Getter private final int sectionsX, sectionsY, sectionsZ;
+	
+	
+	private ArenaTemplate(MappedByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("not an arena template");
+		}
+		
+		this.minX = buffer.getInt(4);
+		this.minY = buffer.getInt(8);
+		this.minZ = buffer.getInt(12);
+		this.sizeX = buffer.getInt(16);
+		this.sizeY = buffer.getInt(20);
+		this.sizeZ = buffer.getInt(24);
+		this.sectionsX = buffer.getInt(28);
+		this.sectionsY = buffer.getInt(32);
+		this.sectionsZ = buffer.getInt(36);
+		
+		if (buffer.capacity() < HEADER_SIZE + getSectionsAmount() * 4) {
+			throw new IOException("truncated arena template");
+		}
+	}
+	
+	
+	public static ArenaTemplate load(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			// La mappatura resta valida anche dopo la chiusura del canale
+			return new ArenaTemplate(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+	
+	
+	public boolean matches(Region region) {
+		return minX == region.getMinCorner().getX() && minY == region.getMinCorner().getY() && minZ == region.getMinCorner().getZ() &&
+			sizeX == region.getMaxCorner().getX() - minX + 1 &&
+			sizeY == region.getMaxCorner().getY() - minY + 1 &&
+			sizeZ == region.getMaxCorner().getZ() - minZ + 1;
+	}
+	
+	
+	public int getSectionsAmount() {
+		return sectionsX * sectionsY * sectionsZ;
+	}
+	
+	public int getSectionX(int sectionIndex) {
+		return sectionIndex % sectionsX;
+	}
+	
+	public int getSectionY(int sectionIndex) {
+		return sectionIndex / (sectionsX * sectionsZ);
+	}
+	
+	public int getSectionZ(int sectionIndex) {
+		return (sectionIndex / sectionsX) % sectionsZ;
+	}
+	
+	
+	/**
+	 * Decodifica gli stati di una sezione in un array di 4096 elementi, indicizzato con (y << 8 | z << 4 | x).
+	 * Usa solo letture assolute, quindi può essere chiamato da più thread.
+	 */
+	public void decodeSection(int sectionIndex, int[] states) {
+		int position = buffer.getInt(HEADER_SIZE + sectionIndex * 4);
+		
+		int bitsPerEntry = buffer.get(position) & 0xFF;
+		int paletteSize = buffer.getShort(position + 1) & 0xFFFF;
+		int palettePosition = position + 3;
+		
+		if (bitsPerEntry == 0) {
+			// Sezione di un solo tipo di blocco
+			Arrays.fill(states, 0, SECTION_VOLUME, buffer.getShort(palettePosition) & 0xFFFF);
+			return;
+		}
+		
+		int dataPosition = palettePosition + paletteSize * 2;
+		int entriesPerLong = 64 / bitsPerEntry;
+		long entryMask = (1L << bitsPerEntry) - 1;
+		
+		for (int i = 0; i < SECTION_VOLUME; i++) {
+			long word = buffer.getLong(dataPosition + (i / entriesPerLong) * 8);
+			int paletteIndex = (int) ((word >>> ((i % entriesPerLong) * bitsPerEntry)) & entryMask);
+			states[i] = buffer.getShort(palettePosition + paletteIndex * 2) & 0xFFFF;
+		}
+	}
+	
+	
+	public static int getTypeId(int state) {
+		return state >> 4;
+	}
+	
+	public static byte getData(int state) {
+		return (byte) (state & 0xF);
+	}
+	
+	
+	/**
+	 * Da chiamare nel thread principale: carica i chunk della regione e ne copia i blocchi.
+	 * La scrittura del file può avvenire poi in modo asincrono.
+	 */
+	public static Capture capture(Region region) {
+		return new Capture(region.getMinCorner().getX(), region.getMinCorner().getY(), region.getMinCorner().getZ(),
+			region.getMaxCorner().getX(), region.getMaxCorner().getY(), region.getMaxCorner().getZ(), RegionSnapshot.captureAll(region));
+	}
+	
+	
+	public static class Capture {
+		
+		private final int minX, minY, minZ, maxX, maxY, maxZ;
+		private final RegionSnapshot snapshot;
+		
+		private Capture(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, RegionSnapshot snapshot) {
+			this.minX = minX;
+			this.minY = minY;
+			this.minZ = minZ;
+			this.maxX = maxX;
+			this.maxY = maxY;
+			this.maxZ = maxZ;
+			this.snapshot = snapshot;
+		}
+		
+		/**
+		 * Può essere chiamato in modo asincrono. Il file viene sostituito solo a scrittura completata.
+		 */
+		public void writeTo(File file) throws IOException {
+			int sizeX = maxX - minX + 1;
+			int sizeY = maxY - minY + 1;
+			int sizeZ = maxZ - minZ + 1;
+			int sectionsX = (sizeX + SECTION_MASK) >> SECTION_SHIFT;
+			int sectionsY = (sizeY + SECTION_MASK) >> SECTION_SHIFT;
+			int sectionsZ = (sizeZ + SECTION_MASK) >> SECTION_SHIFT;
+			int sectionsAmount = sectionsX * sectionsY * sectionsZ;
+			
+			ByteArrayOutputStream sectionsData = new ByteArrayOutputStream();
+			DataOutputStream sectionsOut = new DataOutputStream(sectionsData);
+			int[] sectionOffsets = new int[sectionsAmount];
+			int dataStart = HEADER_SIZE + sectionsAmount * 4;
+			
+			int[] states = new int[SECTION_VOLUME];
+			int[] palette = new int[SECTION_VOLUME];
+			int[] paletteIndexByState = new int[1 << 16];
+			Arrays.fill(paletteIndexByState, -1);
+			
+			for (int sectionIndex = 0; sectionIndex < sectionsAmount; sectionIndex++) {
+				int baseX = minX + ((sectionIndex % sectionsX) << SECTION_SHIFT);
+				int baseY = minY + ((sectionIndex / (sectionsX * sectionsZ)) << SECTION_SHIFT);
+				int baseZ = minZ + (((sectionIndex / sectionsX) % sectionsZ) << SECTION_SHIFT);
+				
+				// Stati e palette della sezione
+				int paletteSize = 0;
+				for (int i = 0; i < SECTION_VOLUME; i++) {
+					int state = getState(baseX + (i & SECTION_MASK), baseY + (i >> 8), baseZ + ((i >> SECTION_SHIFT) & SECTION_MASK));
+					states[i] = state;
+					if (paletteIndexByState[state] < 0) {
+						paletteIndexByState[state] = paletteSize;
+						palette[paletteSize++] = state;
+					}
+				}
+				
+				int bitsPerEntry = paletteSize > 1 ? 32 - Integer.numberOfLeadingZeros(paletteSize - 1) : 0;
+				
+				sectionOffsets[sectionIndex] = dataStart + sectionsOut.size();
+				sectionsOut.writeByte(bitsPerEntry);
+				sectionsOut.writeShort(paletteSize);
+				for (int i = 0; i < paletteSize; i++) {
+					sectionsOut.writeShort(palette[i]);
+				}
+				
+				if (bitsPerEntry > 0) {
+					int entriesPerLong = 64 / bitsPerEntry;
+					int longsAmount = (SECTION_VOLUME + entriesPerLong - 1) / entriesPerLong;
+					
+					for (int longIndex = 0; longIndex < longsAmount; longIndex++) {
+						long word = 0;
+						for (int j = 0; j < entriesPerLong; j++) {
+							int i = longIndex * entriesPerLong + j;
+							if (i >= SECTION_VOLUME) {
+								break;
+							}
+							word |= (long) paletteIndexByState[states[i]] << (j * bitsPerEntry);
+						}
+						sectionsOut.writeLong(word);
+					}
+				}
+				
+				// Pulisce solo le voci usate
+				for (int i = 0; i < paletteSize; i++) {
+					paletteIndexByState[palette[i]] = -1;
+				}
+			}
+			
+			File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(minX);
+				out.writeInt(minY);
+				out.writeInt(minZ);
+				out.writeInt(sizeX);
+				out.writeInt(sizeY);
+				out.writeInt(sizeZ);
+				out.writeInt(sectionsX);
+				out.writeInt(sectionsY);
+				out.writeInt(sectionsZ);
+				for (int sectionOffset : sectionOffsets) {
+					out.writeInt(sectionOffset);
+				}
+				sectionsData.writeTo(out);
+			}
+			
+			// Un'eventuale versione precedente mappata in memoria resta leggibile fino al prossimo caricamento
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		
+		private int getState(int x, int y, int z) {
+			if (x > maxX || y > maxY || z > maxZ) {
+				return 0; // Fuori dalla regione, aria
+			}
+			
+			return snapshot.getState(x, y, z);
+		}
+		
+	}
+
+}
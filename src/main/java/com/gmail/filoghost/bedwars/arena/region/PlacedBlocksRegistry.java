@@ -28,7 +28,7 @@
  */
 package com.gmail.filoghost.bedwars.arena.region;
 
-import java.util.List;
+import java.util.Arrays;
 
 import org.bukkit.Material;
 import org.bukkit.World;
@@ -36,19 +36,37 @@ import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 
 import com.gmail.filoghost.bedwars.utils.IntVector;
-import com.google.common.collect.Lists;
-
-import lombok.AllArgsConstructor;
-import lombok.ToString;
 
 @SuppressWarnings("deprecation")
 public class PlacedBlocksRegistry {
 	
+	// Sezioni 16x16x16, un bit per blocco (4096 bit = 64 long)
+	private static final int SECTION_SHIFT = 4;
+	private static final int SECTION_MASK = 15;
+	private static final int SECTION_WORDS = 4096 / 64;
+	
+	// Ogni sezione contiene due piani di bit: blocchi piazzati e blocchi già salvati nel journal
+	private static final int PLACED_PLANE = 0;
+	private static final int SAVED_PLANE = SECTION_WORDS;
+	
+	// Formato di una voce del journal: x (16 bit) | z (16 bit) | y (12 bit) | id (12 bit) | data (4 bit), coordinate relative all'offset
+	private static final int JOURNAL_Z_SHIFT = 16;
+	private static final int JOURNAL_Y_SHIFT = 32;
+	private static final int JOURNAL_TYPE_SHIFT = 44;
+	private static final int JOURNAL_DATA_SHIFT = 56;
+	private static final int JOURNAL_INITIAL_CAPACITY = 256;
+	
 	private World world;
-	private boolean[][][] bitmask; // Organizzata in modo "lazy" in base alla y (è meno probabile che i giocatori vadano in alto o in basso)
 	private IntVector offset;
-	private IntVector size;
-	private List<BlockRestoreInfo> blocksToRestore;
+	private int sectionsX, sectionsY, sectionsZ;
+	private long[][] sections; // Indicizzate per coordinate della sezione (relative all'offset), create solo quando servono
+	private int[] dirtySections; // Indici delle sezioni modificate, per non scorrere tutta la regione al ripristino
+	private int dirtySectionsCount;
+	private int restoreCursor; // Indice della prossima sezione da ripristinare, se il ripristino è stato interrotto
+	
+	private long[] journal; // Blocchi sostituiti da ripristinare, una voce per posizione
+	private int journalSize;
+	private int journalCursor;
 	
 	
 	public PlacedBlocksRegistry(Region region) {
@@ -58,9 +76,12 @@ public class PlacedBlocksRegistry {
 		
 		world = region.getWorld();
 		offset = region.getMinCorner();
-		size = new IntVector(xSize, ySize, zSize);
-		bitmask = new boolean[ySize][][];
-		blocksToRestore = Lists.newLinkedList();
+		sectionsX = (xSize + SECTION_MASK) >> SECTION_SHIFT;
+		sectionsY = (ySize + SECTION_MASK) >> SECTION_SHIFT;
+		sectionsZ = (zSize + SECTION_MASK) >> SECTION_SHIFT;
+		sections = new long[sectionsX * sectionsY * sectionsZ][];
+		dirtySections = new int[16];
+		journal = new long[JOURNAL_INITIAL_CAPACITY];
 	}
 	
 	/**
@@ -68,16 +89,36 @@ public class PlacedBlocksRegistry {
 	 */
 	public void saveBlockState(BlockState blockState) {
 		if (blockState.getTypeId() != 0) {
-			Block block = blockState.getBlock();
-			blocksToRestore.add(new BlockRestoreInfo(block.getX(), block.getY(), block.getZ(), blockState.getTypeId(), blockState.getRawData()));
+			saveToJournal(blockState.getX(), blockState.getY(), blockState.getZ(), blockState.getTypeId(), blockState.getRawData());
 		}
 	}
 	
 	public void saveBlockState(Block block) {
 		if (block.getTypeId() != 0) {
-			blocksToRestore.add(new BlockRestoreInfo(block.getX(), block.getY(), block.getZ(), block.getTypeId(), block.getData()));
+			saveToJournal(block.getX(), block.getY(), block.getZ(), block.getTypeId(), block.getData());
 		}
 	}
+	
+	private void saveToJournal(int blockX, int blockY, int blockZ, int type, byte data) {
+		int xIndex = blockX - offset.getX();
+		int yIndex = blockY - offset.getY();
+		int zIndex = blockZ - offset.getZ();
+		
+		if (!testAndSet(xIndex, yIndex, zIndex, SAVED_PLANE)) {
+			// Salvato in precedenza, lo stato originale è quello già presente
+			return;
+		}
+		
+		if (journalSize == journal.length) {
+			journal = Arrays.copyOf(journal, journal.length * 2);
+		}
+		journal[journalSize++] =
+			(long) xIndex |
+			(long) zIndex << JOURNAL_Z_SHIFT |
+			(long) yIndex << JOURNAL_Y_SHIFT |
+			(long) (type & 0xFFF) << JOURNAL_TYPE_SHIFT |
+			(long) (data & 0xF) << JOURNAL_DATA_SHIFT;
+	}
 
 
 	
@@ -85,21 +126,7 @@ public class PlacedBlocksRegistry {
 	 * @return true se è la prima volta che viene posizionato
 	 */
 	public boolean setPlayerPlaced(Block block) {
-		int yIndex = block.getY() - offset.getY();
-		boolean[][] yLayer = bitmask[yIndex];
-		if (yLayer == null) {
-			yLayer = new boolean[size.getX()][size.getZ()];
-			bitmask[yIndex] = yLayer;
-		}
-		
-		int xIndex = block.getX() - offset.getX();
-		int zIndex = block.getZ() - offset.getZ();
-		if (yLayer[xIndex][zIndex]) {
-			return false;
-		} else {
-			yLayer[xIndex][zIndex] = true;
-			return true;
-		}
+		return testAndSet(block.getX() - offset.getX(), block.getY() - offset.getY(), block.getZ() - offset.getZ(), PLACED_PLANE);
 	}
 	
 	
@@ -108,55 +135,126 @@ public class PlacedBlocksRegistry {
 	 * Se è fuori -> ArrayOutOfBoundsException
 	 */
 	public boolean isPlayerPlaced(Block block) {
+		int xIndex = block.getX() - offset.getX();
 		int yIndex = block.getY() - offset.getY();
-		boolean[][] yLayer = bitmask[yIndex];
-		if (yLayer == null) {
-			// Nessun giocatore ha mai costruito a questa Y
+		int zIndex = block.getZ() - offset.getZ();
+		
+		long[] section = sections[sectionIndex(xIndex, yIndex, zIndex)];
+		if (section == null) {
+			// Nessun giocatore ha mai costruito in questa sezione
 			return false;
 		}
 		
-		int xIndex = block.getX() - offset.getX();
-		int zIndex = block.getZ() - offset.getZ();
-		
-		return yLayer[xIndex][zIndex];
+		int bitIndex = bitIndex(xIndex, yIndex, zIndex);
+		return (section[PLACED_PLANE + (bitIndex >> 6)] & (1L << bitIndex)) != 0;
 	}
 
 	
 	public void restore() {
-		for (int yIndex = 0; yIndex < size.getY(); yIndex++) {
-			boolean[][] yLayer = bitmask[yIndex];
-			if (yLayer == null) {
-				continue;
-			}
+		restoreStep(Long.MAX_VALUE);
+	}
+	
+	
+	/**
+	 * Ripristina i blocchi finché non viene superato il tempo limite (System.nanoTime()).
+	 * Se viene interrotto, la chiamata successiva riprende da dove si era fermato.
+	 * 
+	 * @return true se il ripristino è completato
+	 */
+	public boolean restoreStep(long deadlineNanos) {
+		// Visita solo le sezioni modificate, e al loro interno solo i bit settati
+		for (; restoreCursor < dirtySectionsCount; restoreCursor++) {
+			int sectionIndex = dirtySections[restoreCursor];
+			long[] section = sections[sectionIndex];
+			
+			int sectionX = sectionIndex % sectionsX;
+			int sectionZ = (sectionIndex / sectionsX) % sectionsZ;
+			int sectionY = sectionIndex / (sectionsX * sectionsZ);
 			
-			for (int xIndex = 0; xIndex < size.getX(); xIndex++) {
-				for (int zIndex = 0; zIndex < size.getZ(); zIndex++) {
-					if (yLayer[xIndex][zIndex] == true) {
-						world.getBlockAt(xIndex + offset.getX(), yIndex + offset.getY(), zIndex + offset.getZ()).setType(Material.AIR, false);
-						yLayer[xIndex][zIndex] = false;
+			int baseX = offset.getX() + (sectionX << SECTION_SHIFT);
+			int baseY = offset.getY() + (sectionY << SECTION_SHIFT);
+			int baseZ = offset.getZ() + (sectionZ << SECTION_SHIFT);
+			
+			for (int wordIndex = PLACED_PLANE; wordIndex < PLACED_PLANE + SECTION_WORDS; wordIndex++) {
+				while (section[wordIndex] != 0) {
+					if (System.nanoTime() >= deadlineNanos) {
+						return false;
 					}
+					
+					long word = section[wordIndex];
+					int bitIndex = ((wordIndex - PLACED_PLANE) << 6) | Long.numberOfTrailingZeros(word);
+					section[wordIndex] = word & (word - 1); // Rimuove il bit più basso, così si può riprendere da qui
+					
+					world.getBlockAt(
+						baseX + (bitIndex & SECTION_MASK),
+						baseY + (bitIndex >> 8),
+						baseZ + ((bitIndex >> SECTION_SHIFT) & SECTION_MASK)
+					).setType(Material.AIR, false);
 				}
 			}
 			
-			bitmask[yIndex] = null;
+			sections[sectionIndex] = null;
 		}
+		restoreCursor = 0;
+		dirtySectionsCount = 0;
 		
-		// Ripristina i blocchi salvati
-		for (BlockRestoreInfo blockRestoreInfo : blocksToRestore) {
-			world.getBlockAt(blockRestoreInfo.x, blockRestoreInfo.y, blockRestoreInfo.z).setTypeIdAndData(blockRestoreInfo.type, blockRestoreInfo.data, false);
+		// Ripristina i blocchi salvati, scorrendo il journal in ordine
+		for (; journalCursor < journalSize; journalCursor++) {
+			if (System.nanoTime() >= deadlineNanos) {
+				return false;
+			}
+			
+			long entry = journal[journalCursor];
+			world.getBlockAt(
+				offset.getX() + (int) (entry & 0xFFFF),
+				offset.getY() + (int) ((entry >>> JOURNAL_Y_SHIFT) & 0xFFF),
+				offset.getZ() + (int) ((entry >>> JOURNAL_Z_SHIFT) & 0xFFFF)
+			).setTypeIdAndData((int) ((entry >>> JOURNAL_TYPE_SHIFT) & 0xFFF), (byte) ((entry >>> JOURNAL_DATA_SHIFT) & 0xF), false);
 		}
-		blocksToRestore.clear();
+		journalCursor = 0;
+		journalSize = 0;
+		
+		return true;
 	}
 	
 	
-	@AllArgsConstructor
-	@ToString
-	private static class BlockRestoreInfo {
+	/**
+	 * @return true se il bit non era ancora settato
+	 */
+	private boolean testAndSet(int xIndex, int yIndex, int zIndex, int plane) {
+		int sectionIndex = sectionIndex(xIndex, yIndex, zIndex);
+		long[] section = sections[sectionIndex];
+		if (section == null) {
+			section = new long[SECTION_WORDS * 2];
+			sections[sectionIndex] = section;
+			markDirty(sectionIndex);
+		}
 		
-		private int x, y, z;
-		private int type;
-		private byte data;
+		int bitIndex = bitIndex(xIndex, yIndex, zIndex);
+		long bit = 1L << bitIndex;
+		int wordIndex = plane + (bitIndex >> 6);
 		
+		if ((section[wordIndex] & bit) != 0) {
+			return false;
+		} else {
+			section[wordIndex] |= bit;
+			return true;
+		}
+	}
+	
+	private int sectionIndex(int xIndex, int yIndex, int zIndex) {
+		return ((yIndex >> SECTION_SHIFT) * sectionsZ + (zIndex >> SECTION_SHIFT)) * sectionsX + (xIndex >> SECTION_SHIFT);
+	}
+	
+	private static int bitIndex(int xIndex, int yIndex, int zIndex) {
+		return ((yIndex & SECTION_MASK) << 8) | ((zIndex & SECTION_MASK) << SECTION_SHIFT) | (xIndex & SECTION_MASK);
+	}
+	
+	private void markDirty(int sectionIndex) {
+		if (dirtySectionsCount == dirtySections.length) {
+			dirtySections = Arrays.copyOf(dirtySections, dirtySections.length * 2);
+		}
+		dirtySections[dirtySectionsCount++] = sectionIndex;
 	}
 
 }
@@ -28,11 +28,16 @@
  */
 package com.gmail.filoghost.bedwars.arena.region;
 
+import java.util.Arrays;
+
 import org.bukkit.block.Block;
 
-import com.gmail.filoghost.bedwars.utils.IntVector;
 import com.gmail.filoghost.bedwars.utils.Utils;
 
+/**
+ * Le zone protette sono salvate come sfere, raggruppate per chunk.
+ * La memoria occupata dipende dal numero di zone e non dal volume della regione.
+ */
 public class ProtectedBlocksRegistry {
 	
 	public static enum ProtectionReason {
@@ -43,68 +48,164 @@ public class ProtectedBlocksRegistry {
 		
 	}
 	
-	private byte[][][] bitmask; // Organizzata in modo "lazy" in base alla y (è meno probabile che i giocatori vadano in alto o in basso)
-	private IntVector offset;
-	private IntVector size;
+	private static final ProtectionReason[] REASONS = ProtectionReason.values();
+	
+	// Dopo quante ricerche in una sezione 16x16x16 conviene precalcolare i motivi di tutti i blocchi
+	private static final int CACHE_THRESHOLD = 32;
+	
+	private final int minChunkX, minChunkZ, chunksX, chunksZ;
+	private final ChunkBucket[] buckets; // Null se nel chunk non ci sono zone protette
 	
 	
 	public ProtectedBlocksRegistry(Region region) {
-		int xSize = region.getMaxCorner().getX() - region.getMinCorner().getX() + 1;
-		int ySize = region.getMaxCorner().getY() - region.getMinCorner().getY() + 1;
-		int zSize = region.getMaxCorner().getZ() - region.getMinCorner().getZ() + 1;
-		
-		offset = region.getMinCorner();
-		size = new IntVector(xSize, ySize, zSize);
-		bitmask = new byte[ySize][][];
+		minChunkX = region.getMinX() >> 4;
+		minChunkZ = region.getMinZ() >> 4;
+		chunksX = (region.getMaxX() >> 4) - minChunkX + 1;
+		chunksZ = (region.getMaxZ() >> 4) - minChunkZ + 1;
+		buckets = new ChunkBucket[chunksX * chunksZ];
 	}
 	
 	public void setRangeProtectionReason(Block block, int radius, ProtectionReason protectionReason) {
-		for (int x = block.getX() - radius; x <= block.getX() + radius; x++) {
-			for (int y = block.getY() - radius; y <= block.getY() + radius; y++) {
-				for (int z = block.getZ() - radius; z <= block.getZ() + radius; z++) {
-					
-					int distanceSquared = Utils.square(block.getX() - x) + Utils.square(block.getY() - y) + Utils.square(block.getZ() - z);
-					if (distanceSquared <= Utils.square(radius + 0.5)) {
-						setProtectionReason(x, y, z, protectionReason);
-					}
-					
+		addZone(new SphereZone(block.getX(), block.getY(), block.getZ(), radius, protectionReason));
+	}
+	
+	
+	private void addZone(ProtectionZone zone) {
+		int fromChunkX = Math.max(zone.minX >> 4, minChunkX);
+		int fromChunkZ = Math.max(zone.minZ >> 4, minChunkZ);
+		int toChunkX = Math.min(zone.maxX >> 4, minChunkX + chunksX - 1);
+		int toChunkZ = Math.min(zone.maxZ >> 4, minChunkZ + chunksZ - 1);
+		
+		for (int chunkX = fromChunkX; chunkX <= toChunkX; chunkX++) {
+			for (int chunkZ = fromChunkZ; chunkZ <= toChunkZ; chunkZ++) {
+				int bucketIndex = (chunkZ - minChunkZ) * chunksX + (chunkX - minChunkX);
+				ChunkBucket bucket = buckets[bucketIndex];
+				if (bucket == null) {
+					bucket = new ChunkBucket();
+					buckets[bucketIndex] = bucket;
 				}
+				bucket.add(zone);
 			}
 		}
 	}
-
 	
-	private void setProtectionReason(int blockX, int blockY, int blockZ, ProtectionReason protectionReason) {
-		int yIndex = blockY - offset.getY();
-		byte[][] yLayer = bitmask[yIndex];
-		if (yLayer == null) {
-			yLayer = new byte[size.getX()][size.getZ()];
-			bitmask[yIndex] = yLayer;
+	
+	public ProtectionReason getProtectionReason(Block block) {
+		int chunkXIndex = (block.getX() >> 4) - minChunkX;
+		int chunkZIndex = (block.getZ() >> 4) - minChunkZ;
+		if (chunkXIndex < 0 || chunkXIndex >= chunksX || chunkZIndex < 0 || chunkZIndex >= chunksZ) {
+			return null;
 		}
 		
-		int xIndex = blockX - offset.getX();
-		int zIndex = blockZ - offset.getZ();
-		yLayer[xIndex][zIndex] = (byte) (protectionReason.ordinal() + 1);
+		ChunkBucket bucket = buckets[chunkZIndex * chunksX + chunkXIndex];
+		if (bucket == null) {
+			// Nessuna protezione in questo chunk
+			return null;
+		}
+		
+		return bucket.getProtectionReason(block.getX(), block.getY(), block.getZ());
 	}
 	
 	
-	public ProtectionReason getProtectionReason(Block block) {
-		int yIndex = block.getY() - offset.getY();
-		byte[][] yLayer = bitmask[yIndex];
-		if (yLayer == null) {
-			// Nessuna protezione a questa Y
-			return null;
+	private static class ChunkBucket {
+		
+		private ProtectionZone[] zones = new ProtectionZone[0];
+		
+		// Per ogni sezione verticale: numero di ricerche e, se sono tante, i motivi precalcolati (4 bit per blocco)
+		private final int[] lookups = new int[16];
+		private final long[][] nibbleCache = new long[16][];
+		
+		private void add(ProtectionZone zone) {
+			zones = Arrays.copyOf(zones, zones.length + 1);
+			zones[zones.length - 1] = zone;
+			
+			Arrays.fill(nibbleCache, null);
+			Arrays.fill(lookups, 0);
 		}
 		
-		int xIndex = block.getX() - offset.getX();
-		int zIndex = block.getZ() - offset.getZ();
+		private ProtectionReason getProtectionReason(int x, int y, int z) {
+			if (y < 0 || y > 255) {
+				return resolve(x, y, z);
+			}
+			
+			int sectionY = y >> 4;
+			int nibbleIndex = (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+			long[] cache = nibbleCache[sectionY];
+			
+			if (cache == null) {
+				if (++lookups[sectionY] < CACHE_THRESHOLD) {
+					return resolve(x, y, z);
+				}
+				cache = buildCache(x & ~15, sectionY << 4, z & ~15);
+				nibbleCache[sectionY] = cache;
+			}
+			
+			int nibble = (int) (cache[nibbleIndex >> 4] >>> ((nibbleIndex & 15) << 2)) & 0xF;
+			return nibble > 0 ? REASONS[nibble - 1] : null;
+		}
 		
-		byte ordinalValue = yLayer[xIndex][zIndex];
-		if (ordinalValue > 0) {
-			return ProtectionReason.values()[ordinalValue - 1];
-		} else {
+		private long[] buildCache(int baseX, int baseY, int baseZ) {
+			long[] cache = new long[4096 / 16];
+			for (int nibbleIndex = 0; nibbleIndex < 4096; nibbleIndex++) {
+				ProtectionReason reason = resolve(baseX + (nibbleIndex & 15), baseY + (nibbleIndex >> 8), baseZ + ((nibbleIndex >> 4) & 15));
+				if (reason != null) {
+					cache[nibbleIndex >> 4] |= (long) (reason.ordinal() + 1) << ((nibbleIndex & 15) << 2);
+				}
+			}
+			return cache;
+		}
+		
+		private ProtectionReason resolve(int x, int y, int z) {
+			// L'ultima zona aggiunta ha la precedenza, come quando venivano sovrascritte
+			for (int i = zones.length - 1; i >= 0; i--) {
+				if (zones[i].contains(x, y, z)) {
+					return zones[i].reason;
+				}
+			}
 			return null;
 		}
+		
+	}
+	
+	
+	private static abstract class ProtectionZone {
+		
+		protected final int minX, minY, minZ, maxX, maxY, maxZ;
+		protected final ProtectionReason reason;
+		
+		protected ProtectionZone(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, ProtectionReason reason) {
+			this.minX = minX;
+			this.minY = minY;
+			this.minZ = minZ;
+			this.maxX = maxX;
+			this.maxY = maxY;
+			this.maxZ = maxZ;
+			this.reason = reason;
+		}
+		
+		protected abstract boolean contains(int x, int y, int z);
+		
+	}
+	
+	
+	private static class SphereZone extends ProtectionZone {
+		
+		private final int centerX, centerY, centerZ;
+		private final int radiusSquared;
+		
+		private SphereZone(int centerX, int centerY, int centerZ, int radius, ProtectionReason reason) {
+			super(centerX - radius, centerY - radius, centerZ - radius, centerX + radius, centerY + radius, centerZ + radius, reason);
+			this.centerX = centerX;
+			this.centerY = centerY;
+			this.centerZ = centerZ;
+			this.radiusSquared = Utils.square(radius + 0.5);
+		}
+		
+		@Override
+		protected boolean contains(int x, int y, int z) {
+			return Utils.square(centerX - x) + Utils.square(centerY - y) + Utils.square(centerZ - z) <= radiusSquared;
+		}
+		
 	}
 
 }
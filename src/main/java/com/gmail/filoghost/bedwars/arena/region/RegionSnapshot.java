@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.arena.region;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+
+/**
+ * Copia dei chunk di una regione, presa nel thread principale e leggibile da qualsiasi thread.
+ */
+@SuppressWarnings("deprecation")
+public class RegionSnapshot {
+	
+	private final World world;
+	private final int minChunkX, minChunkZ, chunksX, chunksAmount;
+	private final ChunkSnapshot[][] chunks;
+	private int capturedChunks;
+	
+	
+	public RegionSnapshot(Region region) {
+		this.world = region.getWorld();
+		this.minChunkX = region.getMinX() >> 4;
+		this.minChunkZ = region.getMinZ() >> 4;
+		this.chunksX = (region.getMaxX() >> 4) - minChunkX + 1;
+		int chunksZ = (region.getMaxZ() >> 4) - minChunkZ + 1;
+		this.chunksAmount = chunksX * chunksZ;
+		this.chunks = new ChunkSnapshot[chunksX][chunksZ];
+	}
+	
+	
+	/**
+	 * Copia tutti i chunk in una volta sola.
+	 */
+	public static RegionSnapshot captureAll(Region region) {
+		RegionSnapshot snapshot = new RegionSnapshot(region);
+		region.iterateChunks(chunk -> {
+			snapshot.chunks[chunk.getX() - snapshot.minChunkX][chunk.getZ() - snapshot.minChunkZ] = chunk.getChunkSnapshot(false, false, false);
+		});
+		snapshot.capturedChunks = snapshot.chunksAmount;
+		return snapshot;
+	}
+	
+	
+	/**
+	 * Copia i chunk finché non viene superato il tempo limite (System.nanoTime()), riprendendo dalla chiamata precedente.
+	 * 
+	 * @return true se tutti i chunk sono stati copiati
+	 */
+	public boolean captureStep(long deadlineNanos) {
+		while (capturedChunks < chunksAmount) {
+			if (System.nanoTime() >= deadlineNanos) {
+				return false;
+			}
+			
+			int xIndex = capturedChunks % chunksX;
+			int zIndex = capturedChunks / chunksX;
+			chunks[xIndex][zIndex] = world.getChunkAt(minChunkX + xIndex, minChunkZ + zIndex).getChunkSnapshot(false, false, false); // Questo carica il chunk
+			capturedChunks++;
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * @return lo stato del blocco come (id << 4 | data), aria se fuori dal mondo
+	 */
+	public int getState(int x, int y, int z) {
+		if (y < 0 || y > 255) {
+			return 0;
+		}
+		
+		ChunkSnapshot chunk = chunks[(x >> 4) - minChunkX][(z >> 4) - minChunkZ];
+		return (chunk.getBlockTypeId(x & 15, y, z & 15) & 0xFFF) << 4 | (chunk.getBlockData(x & 15, y, z & 15) & 0xF);
+	}
+
+}
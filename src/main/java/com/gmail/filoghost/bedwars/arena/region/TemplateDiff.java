@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.arena.region;
+
+import java.util.Arrays;
+
+import org.bukkit.World;
+
+import lombok.Getter;
+
+/**
+ * Elenco dei blocchi da riscrivere per riportare la regione allo stato del template.
+ * Viene calcolato in modo asincrono e applicato nel thread principale.
+ */
+@SuppressWarnings("deprecation")
+public class TemplateDiff {
+	
+	// Formato di una scrittura: x (16 bit) | z (16 bit) | y (12 bit) | stato (16 bit), coordinate relative al template
+	private static final int Z_SHIFT = 16;
+	private static final int Y_SHIFT = 32;
+	private static final int STATE_SHIFT = 44;
+	
+	// Scritture applicate tra un controllo del tempo e l'altro
+	private static final int BATCH_SIZE = 64;
+	
+	private final ArenaTemplate template;
+	private final long[] writes;
+	@Getter private final int size;
+	private int cursor;
+	
+	
+	private TemplateDiff(ArenaTemplate template, long[] writes, int size) {
+		this.template = template;
+		this.writes = writes;
+		this.size = size;
+	}
+	
+	
+	/**
+	 * Confronta il template con la copia attuale della regione. Può essere chiamato in modo asincrono.
+	 */
+	public static TemplateDiff compute(ArenaTemplate template, RegionSnapshot snapshot) {
+		int[] templateStates = new int[ArenaTemplate.SECTION_VOLUME];
+		long[] writes = new long[256];
+		int size = 0;
+		
+		for (int sectionIndex = 0; sectionIndex < template.getSectionsAmount(); sectionIndex++) {
+			template.decodeSection(sectionIndex, templateStates);
+			
+			int baseX = template.getSectionX(sectionIndex) << ArenaTemplate.SECTION_SHIFT;
+			int baseY = template.getSectionY(sectionIndex) << ArenaTemplate.SECTION_SHIFT;
+			int baseZ = template.getSectionZ(sectionIndex) << ArenaTemplate.SECTION_SHIFT;
+			
+			for (int i = 0; i < ArenaTemplate.SECTION_VOLUME; i++) {
+				int xIndex = baseX + (i & ArenaTemplate.SECTION_MASK);
+				int yIndex = baseY + (i >> 8);
+				int zIndex = baseZ + ((i >> ArenaTemplate.SECTION_SHIFT) & ArenaTemplate.SECTION_MASK);
+				if (xIndex >= template.getSizeX() || yIndex >= template.getSizeY() || zIndex >= template.getSizeZ()) {
+					continue; // Parte della sezione fuori dalla regione
+				}
+				
+				int y = template.getMinY() + yIndex;
+				if (y < 0 || y > 255) {
+					continue;
+				}
+				
+				int state = templateStates[i];
+				if (snapshot.getState(template.getMinX() + xIndex, y, template.getMinZ() + zIndex) != state) {
+					if (size == writes.length) {
+						writes = Arrays.copyOf(writes, writes.length * 2);
+					}
+					writes[size++] = (long) xIndex | (long) zIndex << Z_SHIFT | (long) yIndex << Y_SHIFT | (long) state << STATE_SHIFT;
+				}
+			}
+		}
+		
+		return new TemplateDiff(template, writes, size);
+	}
+	
+	
+	/**
+	 * Applica le scritture a gruppi finché non viene superato il tempo limite (System.nanoTime()).
+	 * 
+	 * @return true se tutte le scritture sono state applicate
+	 */
+	public boolean applyStep(World world, long deadlineNanos) {
+		while (cursor < size) {
+			if (System.nanoTime() >= deadlineNanos) {
+				return false;
+			}
+			
+			int batchEnd = Math.min(cursor + BATCH_SIZE, size);
+			for (; cursor < batchEnd; cursor++) {
+				long entry = writes[cursor];
+				int state = (int) ((entry >>> STATE_SHIFT) & 0xFFFF);
+				world.getBlockAt(
+					template.getMinX() + (int) (entry & 0xFFFF),
+					template.getMinY() + (int) ((entry >>> Y_SHIFT) & 0xFFF),
+					template.getMinZ() + (int) ((entry >>> Z_SHIFT) & 0xFFFF)
+				).setTypeIdAndData(ArenaTemplate.getTypeId(state), ArenaTemplate.getData(state), false);
+			}
+		}
+		return true;
+	}
+
+}
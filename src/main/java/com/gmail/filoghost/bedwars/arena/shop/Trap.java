@@ -29,27 +29,28 @@
 package com.gmail.filoghost.bedwars.arena.shop;
 
 import org.bukkit.Material;
-import org.bukkit.entity.Player;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 
+import com.gmail.filoghost.bedwars.arena.PotionEffectLedger;
+
 import lombok.Getter;
 
 public enum Trap {
 	
-	BLIND_SLOW("Cecità e lentezza I", 5 * 20, Material.LEATHER_BOOTS, player -> {
-		player.addPotionEffect(new PotionEffect(PotionEffectType.BLINDNESS, 5 * 20, 1, true, false));
-		player.addPotionEffect(new PotionEffect(PotionEffectType.SLOW, 5 * 20, 1, true, false));
+	BLIND_SLOW("Cecità e lentezza I", 5 * 20, Material.LEATHER_BOOTS, effects -> {
+		effects.apply(new PotionEffect(PotionEffectType.BLINDNESS, 5 * 20, 1, true, false));
+		effects.apply(new PotionEffect(PotionEffectType.SLOW, 5 * 20, 1, true, false));
 	}),
-	CONFUSION("Confusione e salto bloccato", 5 * 20, Material.LEATHER_BOOTS, player -> {
-		player.addPotionEffect(new PotionEffect(PotionEffectType.CONFUSION, 5 * 20, 1, true, false));
-		player.addPotionEffect(new PotionEffect(PotionEffectType.JUMP, 5 * 20, 128, true, false));
+	CONFUSION("Confusione e salto bloccato", 5 * 20, Material.LEATHER_BOOTS, effects -> {
+		effects.apply(new PotionEffect(PotionEffectType.CONFUSION, 5 * 20, 1, true, false));
+		effects.apply(new PotionEffect(PotionEffectType.JUMP, 5 * 20, 128, true, false));
 	}),
-	WEAKNESS("Debolezza II", 1 * 20, Material.LEATHER_CHESTPLATE, player -> {
-		player.addPotionEffect(new PotionEffect(PotionEffectType.WEAKNESS, 10 * 20, 2, true, false));
+	WEAKNESS("Debolezza II", 1 * 20, Material.LEATHER_CHESTPLATE, effects -> {
+		effects.apply(new PotionEffect(PotionEffectType.WEAKNESS, 10 * 20, 2, true, false));
 	}),
-	FATIGUE("Fatica da scavo III", 15 * 20, Material.WOOD_PICKAXE, player -> {
-		player.addPotionEffect(new PotionEffect(PotionEffectType.SLOW_DIGGING, 15 * 20, 3, true, false));
+	FATIGUE("Fatica da scavo III", 15 * 20, Material.WOOD_PICKAXE, effects -> {
+		effects.apply(new PotionEffect(PotionEffectType.SLOW_DIGGING, 15 * 20, 3, true, false));
 	});
 	
 	@Getter private final String name;
@@ -67,7 +68,7 @@ public enum Trap {
 
 
 	public interface TrapReaction {
-		void onTrigger(Player player);
+		void onTrigger(PotionEffectLedger effects);
 	}
 
 }
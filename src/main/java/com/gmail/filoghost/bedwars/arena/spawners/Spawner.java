@@ -36,6 +36,10 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.util.Vector;
 
 import com.gmail.filoghost.bedwars.Bedwars;
+import com.gmail.filoghost.bedwars.profiler.TickProfiler;
+import com.gmail.filoghost.bedwars.profiler.TickSection;
+import com.gmail.filoghost.bedwars.settings.MainSettings;
+import com.gmail.filoghost.bedwars.timer.TimingWheel;
 import com.gmail.filoghost.bedwars.utils.ResourceLocator;
 import com.gmail.filoghost.holographicdisplays.api.Hologram;
 import com.gmail.filoghost.holographicdisplays.api.HologramsAPI;
@@ -58,15 +62,22 @@ public class Spawner {
 	private int lastColoredSymbolsAmount;
 	private int spawnInterval;
 	
-	private int ticks;
+	private int cycleStartTick;
+	private TimingWheel.Task spawnTask;
+	private TimingWheel.Task progressTask;
+	private int droppedAmount; // Risorse generate ancora a terra, aggiornato da ResourceLocator
+	private Item lastDrop; // Ultimo drop, a cui aggiungere le risorse successive invece di creare nuove entità
+	
+	private final TickProfiler profiler; // Dell'arena, per misurare il tempo delle generazioni
 	
 	private final double teamSizeModifier;
 	private double teamUpgradeModifier;
 	private double globalSpeedModifier;
 	
-	public Spawner(ResourceType resource, Block block, int playersPerTeam) {
+	public Spawner(ResourceType resource, Block block, int playersPerTeam, TickProfiler profiler) {
 		this.resource = resource;
 		this.block = block;
+		this.profiler = profiler;
 		
 		if (resource.isPublic()) {
 			this.teamSizeModifier = 1;
@@ -91,43 +102,129 @@ public class Spawner {
 		reset();
 	}
 	
-	public void onTick() {
-		// TODO: fare che se ci sono troppi drop non va nemmeno avanti con i ticks?
+	/**
+	 * Inizia a generare le risorse, un ciclo alla volta
+	 */
+	public void start() {
+		stop();
+		cycleStartTick = getTimingWheel().getCurrentTick();
+		scheduleSpawn();
+		updateProgress();
+	}
+	
+	public void stop() {
+		if (spawnTask != null) {
+			spawnTask.cancel();
+			spawnTask = null;
+		}
+		if (progressTask != null) {
+			progressTask.cancel();
+			progressTask = null;
+		}
+	}
+	
+	private void scheduleSpawn() {
+		int elapsedTicks = getTimingWheel().getCurrentTick() - cycleStartTick;
+		spawnTask = getTimingWheel().schedule(spawnInterval - elapsedTicks, this::onSpawn);
+	}
+	
+	private void onSpawn() {
+		long startNanos = System.nanoTime();
 		
-		ticks++;
-		if (ticks % spawnInterval == 0) {
-			// Genera la risorsa
-			if (ResourceLocator.countDropsBySpawner(this) < resource.getSpawnLimit()) {
+		// Genera la risorsa
+		if (ResourceLocator.countDropsBySpawner(this) < resource.getSpawnLimit()) {
+			if (MainSettings.spawners_mergeDrops && canStackOnLastDrop()) {
+				ItemStack itemStack = lastDrop.getItemStack();
+				itemStack.setAmount(itemStack.getAmount() + 1);
+				lastDrop.setItemStack(itemStack);
+				ResourceLocator.setDropOwningSpawner(lastDrop, this); // Aggiorna la quantità
+			} else {
 				Item itemEntity = block.getWorld().dropItem(new Location(block.getWorld(), block.getX() + 0.5, block.getY() + 2.0, block.getZ() + 0.5), new ItemStack(resource.getItemMaterial()));
 				itemEntity.setVelocity(ZERO_VECTOR);
 				ResourceLocator.setDropOwningSpawner(itemEntity, this);
+				lastDrop = itemEntity;
 			}
 		}
 		
-		if (progressLine != null) {
-			double progress = (double) (ticks % spawnInterval) / (double) spawnInterval;
-			int coloredSymbolsAmount = (int) (PROGRESS_BAR_LENGTH * progress);
+		cycleStartTick = getTimingWheel().getCurrentTick();
+		scheduleSpawn();
+		updateProgress();
+		profiler.add(TickSection.SPAWNERS, startNanos);
+	}
+	
+	/**
+	 * Aggiorna la barra e si programma al prossimo dei 15 scatti, invece di controllare ogni tick
+	 */
+	private void updateProgress() {
+		if (progressLine == null) {
+			return;
+		}
+		
+		if (progressTask != null) {
+			progressTask.cancel();
+			progressTask = null;
+		}
+		
+		int elapsedTicks = getTimingWheel().getCurrentTick() - cycleStartTick;
+		int coloredSymbolsAmount = Math.min(PROGRESS_BAR_LENGTH * elapsedTicks / spawnInterval, PROGRESS_BAR_LENGTH);
+		int step = Bedwars.getTickTimer().getLoadGovernor().getHologramStep();
+		coloredSymbolsAmount -= coloredSymbolsAmount % step; // Sotto carico la barra avanza di più simboli alla volta
+		
+		if (coloredSymbolsAmount != this.lastColoredSymbolsAmount) {
+			this.lastColoredSymbolsAmount = coloredSymbolsAmount;
+			StringBuilder progressBar = new StringBuilder(PROGRESS_BAR_LENGTH + 4); // 4 = per i due colori
 			
-			if (coloredSymbolsAmount != this.lastColoredSymbolsAmount) {
-				this.lastColoredSymbolsAmount = coloredSymbolsAmount;
-				StringBuilder progressBar = new StringBuilder(PROGRESS_BAR_LENGTH + 4); // 4 = per i due colori
-				
-				progressBar.append(ChatColor.WHITE);
-				for (int i = 0; i < coloredSymbolsAmount; i++) {
-					progressBar.append(PROGRESS_BAR_SYMBOL);
-				}
-				
-				progressBar.append(ChatColor.DARK_GRAY);
-				for (int i = 0; i < (PROGRESS_BAR_LENGTH - coloredSymbolsAmount); i++) {
-					progressBar.append(PROGRESS_BAR_SYMBOL);
-				}
-				
-				progressLine.setText(progressBar.toString());
+			progressBar.append(ChatColor.WHITE);
+			for (int i = 0; i < coloredSymbolsAmount; i++) {
+				progressBar.append(PROGRESS_BAR_SYMBOL);
 			}
 			
+			progressBar.append(ChatColor.DARK_GRAY);
+			for (int i = 0; i < (PROGRESS_BAR_LENGTH - coloredSymbolsAmount); i++) {
+				progressBar.append(PROGRESS_BAR_SYMBOL);
+			}
 			
+			progressLine.setText(progressBar.toString());
+		}
+		
+		// Primo tick in cui la barra avrà un simbolo in più, se arriva prima della generazione
+		int nextStepTicks = ((coloredSymbolsAmount + step) * spawnInterval + PROGRESS_BAR_LENGTH - 1) / PROGRESS_BAR_LENGTH;
+		if (nextStepTicks < spawnInterval) {
+			progressTask = getTimingWheel().schedule(nextStepTicks - elapsedTicks, this::onProgressStep);
 		}
 	}
+	
+	private void onProgressStep() {
+		long startNanos = System.nanoTime();
+		updateProgress();
+		profiler.add(TickSection.SPAWNERS, startNanos);
+	}
+	
+	private static TimingWheel getTimingWheel() {
+		return Bedwars.getTickTimer().getTimingWheel();
+	}
+
+	private boolean canStackOnLastDrop() {
+		if (lastDrop == null || !lastDrop.isValid()) {
+			// Raccolto o unito a un altro drop
+			return false;
+		}
+		
+		ItemStack itemStack = lastDrop.getItemStack();
+		if (itemStack.getAmount() >= itemStack.getMaxStackSize()) {
+			return false;
+		}
+		
+		// Deve essere ancora sopra lo spawner (può solo essere caduto)
+		Location location = lastDrop.getLocation();
+		double diffX = location.getX() - (block.getX() + 0.5);
+		double diffZ = location.getZ() - (block.getZ() + 0.5);
+		return location.getWorld() == block.getWorld() && diffX * diffX + diffZ * diffZ < 1 && location.getY() >= block.getY() && location.getY() <= block.getY() + 2.5;
+	}
+	
+	public void changeDroppedAmount(int delta) {
+		this.droppedAmount += delta;
+	}
 
 	public void setTeamUpgradeModifier(double speed) {
 		this.teamUpgradeModifier = speed;
@@ -141,10 +238,18 @@ public class Spawner {
 	
 	private void updateSpawnInterval() {
 		this.spawnInterval = Math.max((int) (getResource().getSpawnInterval() / (teamUpgradeModifier * teamSizeModifier * globalSpeedModifier)), 1); // Non può essere meno di 1
+		
+		if (spawnTask != null) {
+			// Il ciclo in corso prosegue con la nuova durata
+			spawnTask.cancel();
+			scheduleSpawn();
+			updateProgress();
+		}
 	}
 	
 	public void reset() {
-		ticks = 0;
+		stop();
+		lastDrop = null;
 		teamUpgradeModifier = 1;
 		globalSpeedModifier = 1;
 		lastColoredSymbolsAmount = -1;
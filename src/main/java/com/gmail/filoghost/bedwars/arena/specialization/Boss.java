@@ -113,6 +113,7 @@ public class Boss {
 		private final double maxHealth;
 		private double health;
 		private TextLine healthBar;
+		private int lastColoredSymbolsAmount = -1;
 		
 		public TeamBossStatus(Team team, double maxHealth, TextLine healthBar) {
 			this.team = team;
@@ -132,6 +133,14 @@ public class Boss {
 			double healthPercent = health / maxHealth;
 			int coloredSymbolsAmount = (int) Math.ceil(HEALTH_BAR_LENGTH * healthPercent);
 			
+			// Sotto carico la barra cala di più simboli alla volta, arrotondando per eccesso finché il boss è vivo
+			int step = Bedwars.getTickTimer().getLoadGovernor().getHologramStep();
+			coloredSymbolsAmount = Math.min((coloredSymbolsAmount + step - 1) / step * step, HEALTH_BAR_LENGTH);
+			if (coloredSymbolsAmount == lastColoredSymbolsAmount) {
+				return;
+			}
+			lastColoredSymbolsAmount = coloredSymbolsAmount;
+			
 			StringBuilder progressBar = new StringBuilder(HEALTH_BAR_LENGTH + 4); // 4 = per i due colori
 			
 			progressBar.append(team.getChatColor());
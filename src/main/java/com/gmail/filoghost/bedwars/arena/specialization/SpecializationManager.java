@@ -40,6 +40,7 @@ import com.gmail.filoghost.bedwars.arena.PlayerStatus;
 import com.gmail.filoghost.bedwars.arena.TeamStatus;
 import com.gmail.filoghost.bedwars.database.SQLManager;
 import com.gmail.filoghost.bedwars.hud.shop.SpecializationIcon;
+import com.gmail.filoghost.bedwars.profiler.TickSection;
 
 import lombok.RequiredArgsConstructor;
 import wild.api.WildCommons;
@@ -53,9 +54,8 @@ public class SpecializationManager {
 	
 	
 	public boolean allTeamsSpecialized() {
-		for (PlayerStatus playerStatus : arena.getPlayerStatuses()) {
-			if (playerStatus.getTeam() != null) {
-				TeamStatus teamStatus = arena.getTeamStatus(playerStatus.getTeam());
+		for (TeamStatus teamStatus : arena.getTeamStatuses()) {
+			if (arena.countPlayersByTeam(teamStatus.getTeam()) > 0) {
 				if (teamStatus.getSpecialization() == null && teamStatus.getActiveSpecializationPoll() == null) {
 					return false;
 				}
@@ -96,10 +96,13 @@ public class SpecializationManager {
 	}
 	
 	public void endPoll(TeamStatus teamStatus) {
+		teamStatus.getActiveSpecializationPoll().cancel();
 		Collection<SpecializationType> mostVoted = teamStatus.getActiveSpecializationPoll().getMostVoted();
 		if (mostVoted.size() > 1) {
 			// Troppe scelte, si rifà la votazione tra le opzioni più votate
-			teamStatus.setActiveSpecializationPoll(new SpecializationPoll(mostVoted));
+			SpecializationPoll tiebreakPoll = new SpecializationPoll(mostVoted);
+			teamStatus.setActiveSpecializationPoll(tiebreakPoll);
+			schedulePoll(teamStatus, tiebreakPoll);
 			arena.broadcastTeam(teamStatus.getTeam(), "Il sondaggio per la specializzazione è finito in pareggio. Inizia una nuovo sondaggio tra le opzioni più votate.");
 			
 			
@@ -132,6 +135,7 @@ public class SpecializationManager {
 	
 	public void startPoll(TeamStatus teamStatus, SpecializationPoll specializationPoll, boolean initialMessage) {
 		teamStatus.setActiveSpecializationPoll(specializationPoll);
+		schedulePoll(teamStatus, specializationPoll);
 		if (initialMessage) {
 			arena.broadcastTeam(teamStatus.getTeam(), "E' iniziato il sondaggio per la specializzazione.");
 		}
@@ -139,21 +143,43 @@ public class SpecializationManager {
 	}
 	
 	
+	private void schedulePoll(TeamStatus teamStatus, SpecializationPoll specializationPoll) {
+		specializationPoll.schedule(ticksRemaining -> {
+			long startNanos = System.nanoTime();
+			if (isPollRunning(teamStatus, specializationPoll)) {
+				arena.broadcastTeam(teamStatus.getTeam(), "Mancano " + (ticksRemaining / 20) + " secondi alla fine del sondaggio per la specializzazione!");
+				promptPollOptions(teamStatus, specializationPoll);
+			}
+			arena.getProfiler().add(TickSection.SPEC_POLLS, startNanos);
+		}, () -> {
+			long startNanos = System.nanoTime();
+			if (isPollRunning(teamStatus, specializationPoll)) {
+				endPoll(teamStatus);
+			}
+			arena.getProfiler().add(TickSection.SPEC_POLLS, startNanos);
+		});
+	}
+	
+	
+	private boolean isPollRunning(TeamStatus teamStatus, SpecializationPoll specializationPoll) {
+		// Durante la fine della partita i sondaggi restano fermi
+		return arena.getArenaStatus() == ArenaStatus.COMBAT && teamStatus.getActiveSpecializationPoll() == specializationPoll;
+	}
+	
+	
 	public void promptPollOptions(TeamStatus teamStatus, SpecializationPoll specializationPoll) {
-		for (PlayerStatus playerStatus : arena.getPlayerStatuses()) {
-			if (playerStatus.getTeam() == teamStatus.getTeam()) {
-				if (!specializationPoll.hasVote(playerStatus)) {
-					FancyMessage prompt = WildCommons.fancyMessage(Bedwars.PREFIX).then("Vota: ").color(ChatColor.GRAY);
-					for (SpecializationType voteOption : specializationPoll.getVoteOptions()) {
-						prompt.then("[" + voteOption.getName() + "]")
-							.color(ChatColor.WHITE)
-							.command("/votespec " + voteOption.ordinal())
-							.tooltip(ChatColor.GRAY + "Vota " + voteOption.getColor() + voteOption.getName());
-						prompt.then(" ");
-					}
-					
-					prompt.send(playerStatus.getPlayer());
+		for (PlayerStatus playerStatus : arena.getTeamIndex().getPlayers(teamStatus.getTeam())) {
+			if (!specializationPoll.hasVote(playerStatus)) {
+				FancyMessage prompt = WildCommons.fancyMessage(Bedwars.PREFIX).then("Vota: ").color(ChatColor.GRAY);
+				for (SpecializationType voteOption : specializationPoll.getVoteOptions()) {
+					prompt.then("[" + voteOption.getName() + "]")
+						.color(ChatColor.WHITE)
+						.command("/votespec " + voteOption.ordinal())
+						.tooltip(ChatColor.GRAY + "Vota " + voteOption.getColor() + voteOption.getName());
+					prompt.then(" ");
 				}
+				
+				prompt.send(playerStatus.getPlayer());
 			}
 		}
 	}
@@ -32,9 +32,13 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.IntConsumer;
 
+import com.gmail.filoghost.bedwars.Bedwars;
 import com.gmail.filoghost.bedwars.arena.PlayerStatus;
+import com.gmail.filoghost.bedwars.timer.TimingWheel;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -43,9 +47,12 @@ import lombok.val;
 
 public class SpecializationPoll {
 	
+	private static final int DURATION_TICKS = 60 * 20;
+	private static final int[] REMINDERS_TICKS_REMAINING = { 30 * 20, 10 * 20 };
+	
 	@Getter private Collection<SpecializationType> voteOptions;
 	private Map<PlayerStatus, SpecializationType> votesByPlayer = Maps.newHashMap();
-	@Getter private int ticksRemaining = 60 * 20;
+	private final List<TimingWheel.Task> scheduledTasks = Lists.newArrayList();
 	
 	public SpecializationPoll() {
 		this.voteOptions = Arrays.asList(SpecializationType.values());
@@ -55,8 +62,22 @@ public class SpecializationPoll {
 		this.voteOptions = Lists.newArrayList(voteOptions);
 	}
 	
-	public void onTick() {
-		ticksRemaining--;
+	/**
+	 * Programma i promemoria e la fine del sondaggio, invece di contare i tick rimanenti
+	 */
+	public void schedule(IntConsumer reminderHandler, Runnable endHandler) {
+		TimingWheel timingWheel = Bedwars.getTickTimer().getTimingWheel();
+		for (int ticksRemaining : REMINDERS_TICKS_REMAINING) {
+			scheduledTasks.add(timingWheel.schedule(DURATION_TICKS - ticksRemaining, () -> reminderHandler.accept(ticksRemaining)));
+		}
+		scheduledTasks.add(timingWheel.schedule(DURATION_TICKS, endHandler));
+	}
+	
+	public void cancel() {
+		for (TimingWheel.Task task : scheduledTasks) {
+			task.cancel();
+		}
+		scheduledTasks.clear();
 	}
 	
 	public int getHasVotedAmount() {
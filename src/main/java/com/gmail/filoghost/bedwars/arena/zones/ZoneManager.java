@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.arena.zones;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.bukkit.Location;
+
+import com.gmail.filoghost.bedwars.arena.PlayerGrid;
+import com.gmail.filoghost.bedwars.arena.PlayerStatus;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Zone di un'arena. Nei tick in cui almeno un giocatore ha cambiato blocco o è stato teletrasportato, gli occupanti
+ * di ogni zona vengono cercati nella PlayerGrid e confrontati con quelli precedenti, per notificare l'entrata e l'uscita.
+ */
+public class ZoneManager {
+	
+	private final PlayerGrid playerGrid;
+	private final List<Zone> zones = Lists.newArrayList();
+	private final Set<PlayerStatus> foundOccupants = Sets.newLinkedHashSet(); // Riutilizzato per ogni zona
+	private boolean playersMoved;
+	
+	
+	public ZoneManager(PlayerGrid playerGrid) {
+		this.playerGrid = playerGrid;
+	}
+	
+	public Zone register(Location center, double radius, ZoneHandler handler) {
+		Zone zone = new Zone(center, radius, handler);
+		zones.add(zone);
+		return zone;
+	}
+	
+	/**
+	 * Da chiamare quando un giocatore dell'arena si sposta in un altro blocco, viene teletrasportato o rinasce
+	 */
+	public void onPlayerMove() {
+		playersMoved = true;
+	}
+	
+	/**
+	 * Da chiamare ogni tick. Non fa nulla se nessun giocatore si è spostato dall'ultima volta.
+	 */
+	public void update() {
+		if (!playersMoved) {
+			return;
+		}
+		playersMoved = false;
+		
+		for (Zone zone : zones) {
+			// La griglia contiene solo giocatori vivi
+			playerGrid.forEachNear(zone.getCenter(), zone.getRadius(), foundOccupants::add);
+			
+			Iterator<PlayerStatus> iterator = zone.getOccupants().iterator();
+			while (iterator.hasNext()) {
+				PlayerStatus playerStatus = iterator.next();
+				if (!foundOccupants.contains(playerStatus)) {
+					iterator.remove();
+					zone.getHandler().onExit(playerStatus);
+				}
+			}
+			
+			for (PlayerStatus playerStatus : foundOccupants) {
+				if (zone.getOccupants().add(playerStatus)) {
+					zone.getHandler().onEnter(playerStatus);
+				}
+			}
+			foundOccupants.clear();
+		}
+	}
+	
+	public void removePlayer(PlayerStatus playerStatus) {
+		for (Zone zone : zones) {
+			if (zone.getOccupants().remove(playerStatus)) {
+				zone.getHandler().onExit(playerStatus);
+			}
+		}
+	}
+	
+	/**
+	 * Svuota le zone senza notificare l'uscita, durante il reset dell'arena
+	 */
+	public void clear() {
+		for (Zone zone : zones) {
+			zone.getOccupants().clear();
+		}
+		playersMoved = false;
+	}
+
+}
@@ -28,6 +28,8 @@
  */
 package com.gmail.filoghost.bedwars.command;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -50,6 +52,8 @@ import org.bukkit.plugin.java.JavaPlugin;
 import com.gmail.filoghost.bedwars.Bedwars;
 import com.gmail.filoghost.bedwars.Perms;
 import com.gmail.filoghost.bedwars.arena.Team;
+import com.gmail.filoghost.bedwars.arena.region.ArenaTemplate;
+import com.gmail.filoghost.bedwars.arena.region.Region;
 import com.gmail.filoghost.bedwars.arena.spawners.ResourceType;
 import com.gmail.filoghost.bedwars.settings.objects.ArenaConfig;
 import com.gmail.filoghost.bedwars.settings.objects.BlockConfig;
@@ -228,6 +232,31 @@ public class ArenaCommand extends SubCommandFramework {
 		}
 		
 		player.sendMessage(ChatColor.GREEN + "Hai salvato le modifiche all'arena " + currentSetup.name + ".");
+		
+		// Copia dei blocchi usata per il ripristino, la compressione e la scrittura sono asincrone
+		ArenaTemplate.Capture capture = ArenaTemplate.capture(new Region(currentSetup));
+		File templateFile = Bedwars.getArenaTemplateFile(currentSetup.name);
+		String arenaName = currentSetup.name;
+		player.sendMessage(ChatColor.GRAY + "Salvataggio del template dei blocchi in corso...");
+		
+		Bukkit.getScheduler().runTaskAsynchronously(Bedwars.get(), () -> {
+			String message;
+			try {
+				capture.writeTo(templateFile);
+				message = ChatColor.GREEN + "Hai salvato il template dei blocchi dell'arena " + arenaName + " (" + (templateFile.length() / 1024) + " KB), verrà usato dal prossimo caricamento.";
+			} catch (IOException e) {
+				e.printStackTrace();
+				message = ChatColor.RED + "Impossibile salvare il template dei blocchi dell'arena " + arenaName + ".";
+			}
+			
+			// Il messaggio va inviato dal thread principale, e il giocatore potrebbe essere uscito nel frattempo
+			String result = message;
+			Bukkit.getScheduler().runTask(Bedwars.get(), () -> {
+				if (player.isOnline()) {
+					player.sendMessage(result);
+				}
+			});
+		});
 	}
 	
 	@SubCommand("playersPerTeam")
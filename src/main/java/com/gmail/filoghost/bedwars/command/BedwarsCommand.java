@@ -28,7 +28,15 @@
  */
 package com.gmail.filoghost.bedwars.command;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
 import java.util.Map.Entry;
+import java.util.stream.Collectors;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -39,11 +47,15 @@ import org.bukkit.plugin.java.JavaPlugin;
 import com.gmail.filoghost.bedwars.Bedwars;
 import com.gmail.filoghost.bedwars.Perms;
 import com.gmail.filoghost.bedwars.arena.Arena;
+import com.gmail.filoghost.bedwars.database.SQLBenchmark;
 import com.gmail.filoghost.bedwars.database.SQLManager;
+import com.gmail.filoghost.bedwars.profiler.TickProfiler;
+import com.gmail.filoghost.bedwars.profiler.TickSection;
 import com.gmail.filoghost.bedwars.settings.MainSettings;
 import com.gmail.filoghost.bedwars.settings.objects.ArenaConfig;
 import com.gmail.filoghost.bedwars.settings.objects.LocationConfig;
 import com.gmail.filoghost.bedwars.utils.Utils;
+import com.google.common.collect.Lists;
 
 import net.cubespace.yamler.YamlerConfigurationException;
 import net.md_5.bungee.api.ChatColor;
@@ -128,22 +140,113 @@ public class BedwarsCommand extends SubCommandFramework {
 		}
 	}
 	
-	@SubCommand("reset")
-	public void reset(CommandSender sender, String label, String[] args) {
+	@SubCommand("profile")
+	@SubCommandUsage("[arena | dump]")
+	public void profile(CommandSender sender, String label, String[] args) {
+		long nowMillis = System.currentTimeMillis();
+		List<String> lines = Lists.newArrayList();
+		
+		if (args.length == 0) {
+			// Riepilogo del server e totale di ogni arena
+			lines.add(ChatColor.GOLD + "Tempi del tick (server):");
+			Bedwars.getTickTimer().getProfiler().appendReport(lines, nowMillis);
+			Bedwars.getTickTimer().getBudget().appendReport(lines);
+			lines.add(ChatColor.GOLD + "Totale per arena (1 min):");
+			for (Arena arena : Bedwars.getArenasByName().values()) {
+				lines.add(ChatColor.YELLOW + arena.getName() + ": " + ChatColor.GRAY + TickProfiler.formatSummary(arena.getProfiler().summarize(TickSection.ARENA_TOTAL, false, nowMillis)));
+			}
+			lines.add(ChatColor.GRAY + "Dettagli: /" + label + " profile <arena>, salvataggio su file: /" + label + " profile dump");
+			
+		} else if (args[0].equalsIgnoreCase("dump")) {
+			lines.add("Tempi del tick (server):");
+			Bedwars.getTickTimer().getProfiler().appendReport(lines, nowMillis);
+			Bedwars.getTickTimer().getBudget().appendReport(lines);
+			Bedwars.getTickTimer().getLoadGovernor().appendReport(lines);
+			for (Arena arena : Bedwars.getArenasByName().values()) {
+				lines.add("");
+				lines.add("Arena " + arena.getName() + " (" + arena.getArenaStatus() + "):");
+				arena.getProfiler().appendReport(lines, nowMillis);
+			}
+			
+			File profilesFolder = new File(Bedwars.get().getDataFolder(), "profiles");
+			File dumpFile = new File(profilesFolder, "profile-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(nowMillis)) + ".txt");
+			List<String> plainLines = lines.stream().map(ChatColor::stripColor).collect(Collectors.toList());
+			
+			Bukkit.getScheduler().runTaskAsynchronously(Bedwars.get(), () -> {
+				try {
+					profilesFolder.mkdirs();
+					Files.write(dumpFile.toPath(), plainLines, StandardCharsets.UTF_8);
+					sender.sendMessage(ChatColor.GREEN + "Tempi del tick salvati in " + dumpFile.getName() + ".");
+				} catch (IOException e) {
+					e.printStackTrace();
+					sender.sendMessage(ChatColor.RED + "Impossibile salvare il file.");
+				}
+			});
+			return;
+			
+		} else {
+			Arena arena = Bedwars.getArenaByName(args[0]);
+			CommandValidate.notNull(arena, "Arena non trovata.");
+			
+			lines.add(ChatColor.GOLD + "Tempi del tick (arena " + arena.getName() + "):");
+			arena.getProfiler().appendReport(lines, nowMillis);
+		}
+		
+		for (String line : lines) {
+			sender.sendMessage(line);
+		}
+	}
+	
+	@SubCommand("load")
+	public void load(CommandSender sender, String label, String[] args) {
+		List<String> lines = Lists.newArrayList();
+		Bedwars.getTickTimer().getLoadGovernor().appendReport(lines);
+		for (String line : lines) {
+			sender.sendMessage(line);
+		}
+	}
+	
+	@SubCommand("dbBenchmark")
+	@SubCommandUsage("[righe]")
+	public void dbBenchmark(CommandSender sender, String label, String[] args) {
 		CommandValidate.isTrue(sender instanceof ConsoleCommandSender, "Eseguibile solo da console.");
+		int rowsAmount = args.length > 0 ? CommandValidate.getInteger(args[0]) : 1000;
+		CommandValidate.isTrue(rowsAmount > 0, "Il numero di righe deve essere positivo.");
 		
 		sender.sendMessage(ChatColor.GRAY + "Attendi...");
-		Bukkit.getScheduler().runTaskAsynchronously(Bedwars.get(), () -> {
+		SQLManager.getExecutor().execute(() -> {
 			try {
-				SQLManager.resetStats();
-				Bukkit.getScheduler().runTask(Bedwars.get(), () -> {
-					Bedwars.resetOnlinePlayersData();
-				});
-				
-				sender.sendMessage(ChatColor.GREEN + "Statistiche resettate!");
-				
+				for (String line : SQLBenchmark.run(rowsAmount)) {
+					sender.sendMessage(line);
+				}
 			} catch (Exception e) {
 				e.printStackTrace();
+				sender.sendMessage(ChatColor.RED + "Errore durante il benchmark.");
+			}
+		});
+	}
+	
+	@SubCommand("db")
+	public void db(CommandSender sender, String label, String[] args) {
+		List<String> lines = Lists.newArrayList();
+		SQLManager.getPool().appendReport(lines);
+		SQLManager.getExecutor().appendReport(lines);
+		lines.add(ChatColor.YELLOW + "Statistiche da salvare: " + ChatColor.GRAY + Bedwars.getStatsWriter().getQueueSize() + " in coda, " + Bedwars.getStatsWriter().getWrittenDeltas() + " scritte, " + Bedwars.getStatsWriter().getFailedWrites() + " tentativi falliti");
+		for (String line : lines) {
+			sender.sendMessage(line);
+		}
+	}
+	
+	@SubCommand("reset")
+	public void reset(CommandSender sender, String label, String[] args) {
+		CommandValidate.isTrue(sender instanceof ConsoleCommandSender, "Eseguibile solo da console.");
+		
+		sender.sendMessage(ChatColor.GRAY + "Attendi...");
+		
+		Bedwars.resetStats(success -> {
+			if (success) {
+				sender.sendMessage(ChatColor.GREEN + "Statistiche resettate!");
+			} else {
 				sender.sendMessage(ChatColor.RED + "Errore durante il reset.");
 			}
 		});
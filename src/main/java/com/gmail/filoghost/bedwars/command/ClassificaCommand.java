@@ -55,6 +55,8 @@ public class ClassificaCommand extends CommandFramework {
 			return;
 		}
 		
+		CommandValidate.isTrue(Ranking.isLoaded(), "La classifica è in caricamento, riprova tra poco.");
+		
 		if (args[0].equalsIgnoreCase("uccisioni")) {
 			sendRankingList(sender, "Classifica uccisioni finali", Ranking.getTopFinalKills());
 		} else if (args[0].equalsIgnoreCase("vittorie")) {
@@ -34,10 +34,13 @@ import java.util.Locale;
 
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import com.gmail.filoghost.bedwars.Bedwars;
 import com.gmail.filoghost.bedwars.database.PlayerData;
+import com.gmail.filoghost.bedwars.utils.Leaderboard;
+import com.gmail.filoghost.bedwars.utils.Ranking;
 import wild.api.command.CommandFramework;
 
 public class StatsCommand extends CommandFramework {
@@ -51,7 +54,8 @@ public class StatsCommand extends CommandFramework {
 
 	@Override
 	public void execute(CommandSender sender, String label, String[] args) {
-		PlayerData playerData = Bedwars.getPlayerData(CommandValidate.getPlayerSender(sender));
+		Player player = CommandValidate.getPlayerSender(sender);
+		PlayerData playerData = Bedwars.getPlayerData(player);
 		sender.sendMessage(header("Le tue statistiche"));
 		sender.sendMessage(statLine("Vittorie", playerData.getWins()));
 		sender.sendMessage(statLine("Letti distrutti", playerData.getDestroyedBeds()));
@@ -59,6 +63,8 @@ public class StatsCommand extends CommandFramework {
 		sender.sendMessage(statLine("Uccisioni", playerData.getKills()));
 		sender.sendMessage(statLine("Morti", playerData.getDeaths()));
 		sender.sendMessage(statLine("Rapporto Uccisioni/Morti", calculateKDR(playerData.getKills(), playerData.getDeaths())));
+		sender.sendMessage(statLine("Posizione vittorie", rankLabel(Ranking.getWins(), player.getName())));
+		sender.sendMessage(statLine("Posizione uccisioni finali", rankLabel(Ranking.getFinalKills(), player.getName())));
 		sender.sendMessage("");
 		sender.sendMessage(ChatColor.GRAY + "Classifica globale: " + ChatColor.WHITE + "/classifica");
 		sender.sendMessage("");
@@ -68,6 +74,15 @@ public class StatsCommand extends CommandFramework {
 		return "" + ChatColor.YELLOW + ChatColor.BOLD + name + ": " + ChatColor.WHITE + value;
 	}
 	
+	private String rankLabel(Leaderboard leaderboard, String playerName) {
+		if (!Ranking.isLoaded()) {
+			return ChatColor.GRAY + "in caricamento";
+		}
+		
+		int rank = leaderboard.getRank(playerName);
+		return rank > 0 ? "#" + rank : "-";
+	}
+	
 	private String header(String title) {
 		return "" + ChatColor.GOLD + ChatColor.STRIKETHROUGH + "-----" + ChatColor.RESET + " " + ChatColor.GOLD + ChatColor.BOLD + title + " " + ChatColor.GOLD + ChatColor.STRIKETHROUGH + "-----";
 	}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bukkit.ChatColor;
+
+import lombok.Getter;
+
+/**
+ * Piccolo pool di connessioni con un numero massimo fisso. Le connessioni rimaste ferme per un po' vengono validate
+ * quando vengono prese, e un thread a parte controlla periodicamente quelle inattive, così MySQL non le chiude per wait_timeout.
+ */
+public class ConnectionPool {
+	
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+	
+	private final String url, user, pass;
+	private final int maxSize;
+	private final long validateAfterIdleMillis;
+	
+	private final BlockingQueue<IdleConnection> idle = new LinkedBlockingDeque<>();
+	private final AtomicInteger openConnections = new AtomicInteger();
+	private final ScheduledExecutorService maintenance;
+	private volatile boolean closed;
+	
+	@Getter private volatile long borrowTimeouts;
+	@Getter private volatile long discardedConnections;
+	
+	
+	public ConnectionPool(String host, int port, String database, String user, String pass, int maxSize, long validateAfterIdleMillis) throws SQLException {
+		try {
+			Class.forName("com.mysql.jdbc.Driver");
+		} catch (ClassNotFoundException e) {
+			throw new SQLException("MySQL driver not found", e);
+		}
+		
+		this.url = "jdbc:mysql://" + host + ":" + port + "/" + database + "?useUnicode=true&characterEncoding=utf8";
+		this.user = user;
+		this.pass = pass;
+		this.maxSize = Math.max(maxSize, 1);
+		this.validateAfterIdleMillis = validateAfterIdleMillis;
+		
+		// Controlla subito i dati di accesso
+		release(openConnection());
+		
+		maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Bedwars connection pool");
+			thread.setDaemon(true);
+			return thread;
+		});
+		maintenance.scheduleWithFixedDelay(this::validateIdle, validateAfterIdleMillis, validateAfterIdleMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Da restituire sempre con release(), anche in caso di errore.
+	 */
+	public Connection borrow(long timeoutMillis) throws SQLException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		
+		while (!closed) {
+			IdleConnection idleConnection = idle.poll();
+			if (idleConnection != null) {
+				if (System.currentTimeMillis() - idleConnection.since < validateAfterIdleMillis || isValid(idleConnection.connection)) {
+					return idleConnection.connection;
+				}
+				discard(idleConnection.connection);
+				continue;
+			}
+			
+			// Nessuna connessione libera: se ne apre una nuova se c'è posto, altrimenti si aspetta
+			int open = openConnections.get();
+			if (open < maxSize) {
+				if (openConnections.compareAndSet(open, open + 1)) {
+					try {
+						return DriverManager.getConnection(url, user, pass);
+					} catch (SQLException e) {
+						openConnections.decrementAndGet();
+						throw e;
+					}
+				}
+				continue;
+			}
+			
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				borrowTimeouts++;
+				throw new SQLException("timed out waiting for a database connection");
+			}
+			try {
+				idleConnection = idle.poll(remaining, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("interrupted while waiting for a database connection", e);
+			}
+			if (idleConnection != null) {
+				idle.add(idleConnection); // Ricontrollata al prossimo giro
+			}
+		}
+		
+		throw new SQLException("connection pool is closed");
+	}
+	
+	public void release(Connection connection) {
+		if (connection == null) {
+			return;
+		}
+		
+		try {
+			if (closed || connection.isClosed()) {
+				discard(connection);
+				return;
+			}
+			if (!connection.getAutoCommit()) {
+				// Transazione lasciata a metà da un errore
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			discard(connection);
+			return;
+		}
+		
+		idle.add(new IdleConnection(connection, System.currentTimeMillis()));
+	}
+	
+	public int getOpenConnections() {
+		return openConnections.get();
+	}
+	
+	public int getIdleConnections() {
+		return idle.size();
+	}
+	
+	public int getMaxSize() {
+		return maxSize;
+	}
+	
+	public void appendReport(List<String> lines) {
+		lines.add(ChatColor.YELLOW + "Connessioni: " + ChatColor.GRAY + getOpenConnections() + "/" + maxSize + " aperte, " + getIdleConnections() + " libere");
+		lines.add(ChatColor.GRAY + "  Attese scadute: " + borrowTimeouts + ", connessioni scartate: " + discardedConnections);
+	}
+	
+	public void close() {
+		closed = true;
+		maintenance.shutdownNow();
+		IdleConnection idleConnection;
+		while ((idleConnection = idle.poll()) != null) {
+			discard(idleConnection.connection);
+		}
+	}
+	
+	private Connection openConnection() throws SQLException {
+		Connection connection = DriverManager.getConnection(url, user, pass);
+		openConnections.incrementAndGet();
+		return connection;
+	}
+	
+	private void validateIdle() {
+		// Quelle usate di recente vengono rimesse in coda senza controlli
+		int toCheck = idle.size();
+		for (int i = 0; i < toCheck; i++) {
+			IdleConnection idleConnection = idle.poll();
+			if (idleConnection == null) {
+				return;
+			}
+			
+			if (System.currentTimeMillis() - idleConnection.since < validateAfterIdleMillis) {
+				idle.add(idleConnection);
+			} else if (isValid(idleConnection.connection)) {
+				// La validazione tiene viva la connessione lato server
+				idle.add(new IdleConnection(idleConnection.connection, System.currentTimeMillis()));
+			} else {
+				discard(idleConnection.connection);
+			}
+		}
+	}
+	
+	private boolean isValid(Connection connection) {
+		try {
+			return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+	
+	private void discard(Connection connection) {
+		openConnections.decrementAndGet();
+		discardedConnections++;
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			// Già chiusa o non più raggiungibile
+		}
+	}
+	
+	
+	private static class IdleConnection {
+		
+		private final Connection connection;
+		private final long since;
+		
+		private IdleConnection(Connection connection, long since) {
+			this.connection = connection;
+			this.since = since;
+		}
+		
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.database;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bukkit.ChatColor;
+
+/**
+ * Thread dedicati alle operazioni sul database, al posto dei task asincroni di Bukkit, con le metriche sulla coda.
+ */
+public class DatabaseExecutor {
+	
+	private final ThreadPoolExecutor executor;
+	
+	private final AtomicLong submittedTasks = new AtomicLong();
+	private final AtomicLong completedTasks = new AtomicLong();
+	private final AtomicLong failedTasks = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicInteger maxQueueDepth = new AtomicInteger();
+	
+	
+	public DatabaseExecutor(int threads) {
+		AtomicInteger threadCount = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+			Thread thread = new Thread(runnable, "Bedwars database #" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	public void execute(SQLRunnable task) {
+		long submitNanos = System.nanoTime();
+		submittedTasks.incrementAndGet();
+		
+		executor.execute(() -> {
+			totalWaitNanos.addAndGet(System.nanoTime() - submitNanos);
+			try {
+				task.run();
+			} catch (Exception e) {
+				failedTasks.incrementAndGet();
+				e.printStackTrace();
+			} finally {
+				completedTasks.incrementAndGet();
+			}
+		});
+		
+		maxQueueDepth.accumulateAndGet(executor.getQueue().size(), Math::max);
+	}
+	
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+	
+	/**
+	 * Aspetta i task già in coda, fino al timeout.
+	 */
+	public void shutdown(long timeoutMillis) {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	public void appendReport(List<String> lines) {
+		long completed = completedTasks.get();
+		lines.add(ChatColor.YELLOW + "Thread del database: " + ChatColor.GRAY + executor.getPoolSize() + " (attivi " + executor.getActiveCount() + ")");
+		lines.add(ChatColor.GRAY + "  Coda: " + getQueueDepth() + " (massimo " + maxQueueDepth.get() + ")");
+		lines.add(ChatColor.GRAY + "  Task: " + submittedTasks.get() + " inviati, " + completed + " completati, " + failedTasks.get() + " falliti");
+		lines.add(ChatColor.GRAY + "  Attesa media in coda: " + String.format("%.1f", completed > 0 ? totalWaitNanos.get() / (double) completed / 1_000_000.0 : 0.0) + "ms");
+	}
+	
+	
+	@FunctionalInterface
+	public interface SQLRunnable {
+		
+		void run() throws Exception;
+		
+	}
+
+}
@@ -28,75 +28,98 @@
  */
 package com.gmail.filoghost.bedwars.database;
 
-import java.util.List;
-
 import com.gmail.filoghost.bedwars.arena.Arena;
 import com.gmail.filoghost.bedwars.database.PlayerEvent.PlayerEventType;
-import com.google.common.collect.Lists;
+import com.gmail.filoghost.bedwars.utils.Ranking;
 
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Getter;
 
-@AllArgsConstructor
 @Getter
 public class PlayerData {
 	
+	private final String playerName; // Null se le statistiche non sono legate a un giocatore reale
 	private int wins, kills, finalKills, deaths, destroyedBeds;
-	private List<PlayerEvent> events;
-	private boolean needSave;
+	@Getter(AccessLevel.NONE) private StatsDelta unsavedDelta; // Modifiche non ancora consegnate allo StatsWriter
 	
-	public PlayerData(int wins, int kills, int finalKills, int deaths, int destroyedBeds) {
+	public PlayerData(String playerName, int wins, int kills, int finalKills, int deaths, int destroyedBeds) {
+		this.playerName = playerName;
 		this.wins = wins;
 		this.kills = kills;
 		this.finalKills = finalKills;
 		this.deaths = deaths;
 		this.destroyedBeds = destroyedBeds;
-		this.events = Lists.newLinkedList();
 	}
 	
 
 	public void addWin(Arena arena) {
-		needSave = true;
 		addEvent(PlayerEventType.WIN, arena);
 		wins++;
+		if (playerName != null) {
+			Ranking.getWins().set(playerName, wins);
+		}
 	}
 	
 	public void addKill(Arena arena) {
-		needSave = true;
 		addEvent(PlayerEventType.KILL, arena);
 		kills++;
 	}
 	
 	public void addFinalKill(Arena arena) {
-		needSave = true;
 		addEvent(PlayerEventType.FINAL_KILL, arena);
 		finalKills++;
+		if (playerName != null) {
+			Ranking.getFinalKills().set(playerName, finalKills);
+		}
 	}
 	
 	public void addDeath(Arena arena) {
-		needSave = true;
 		addEvent(PlayerEventType.DEATH, arena);
 		deaths++;
 	}
 	
 	public void addDestroyedBed(Arena arena) {
-		needSave = true;
 		addEvent(PlayerEventType.DESTROYED_BED, arena);
 		destroyedBeds++;
 	}
 	
-	public void resetToZero() {
-		needSave = true;
-		events.clear();
-		wins = 0;
-		kills = 0;
-		finalKills = 0;
-		deaths = 0;
-		destroyedBeds = 0;
+	/**
+	 * Toglie le statistiche che aveva al momento della copia, dopo che il database è stato azzerato.
+	 * Restano solo quelle guadagnate in seguito, che sono ancora da salvare.
+	 */
+	public void subtract(PlayerData copy) {
+		wins -= copy.wins;
+		kills -= copy.kills;
+		finalKills -= copy.finalKills;
+		deaths -= copy.deaths;
+		destroyedBeds -= copy.destroyedBeds;
+	}
+	
+	public PlayerData copy() {
+		return new PlayerData(playerName, wins, kills, finalKills, deaths, destroyedBeds);
+	}
+	
+	public boolean isNeedSave() {
+		return unsavedDelta != null;
+	}
+	
+	/**
+	 * @return le modifiche dall'ultima chiamata, o null se non ce ne sono
+	 */
+	public StatsDelta takeUnsavedDelta() {
+		StatsDelta delta = unsavedDelta;
+		if (delta != null) {
+			delta.setPlayerName(playerName);
+			unsavedDelta = null;
+		}
+		return delta;
 	}
 
 	private void addEvent(PlayerEventType eventType, Arena arena) {
-		events.add(new PlayerEvent(eventType, arena.getMaxPlayersPerTeam(), arena.getTeams().size(), arena.getName(), System.currentTimeMillis()));
+		if (unsavedDelta == null) {
+			unsavedDelta = new StatsDelta();
+		}
+		unsavedDelta.add(new PlayerEvent(eventType, arena.getMaxPlayersPerTeam(), arena.getTeams().size(), arena.getName(), System.currentTimeMillis()));
 	}
 
 }
@@ -52,6 +52,15 @@ public class PlayerEvent {
 		DESTROYED_BED (5);
 		
 		@Getter private final int id;
+		
+		public static PlayerEventType fromId(int id) {
+			for (PlayerEventType type : values()) {
+				if (type.id == id) {
+					return type;
+				}
+			}
+			return null;
+		}
 
 	}
 	
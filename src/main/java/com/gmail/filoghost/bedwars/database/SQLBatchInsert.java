@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Inserimento di più righe con una sola query per blocco (INSERT ... VALUES (...), (...), ...), invece di una query per riga.
+ * Non gestisce la transazione, che spetta al chiamante.
+ */
+public class SQLBatchInsert {
+	
+	private final String table;
+	private final String[] columns;
+	private final OnDuplicateKey onDuplicateKey;
+	
+	private final List<Object[]> rows = Lists.newArrayList();
+	
+	
+	/**
+	 * @param onDuplicateKey cosa fare delle colonne tranne la prima (la chiave) quando la riga esiste già
+	 */
+	public SQLBatchInsert(String table, OnDuplicateKey onDuplicateKey, String... columns) {
+		this.table = table;
+		this.columns = columns;
+		this.onDuplicateKey = onDuplicateKey;
+	}
+	
+	public void addRow(Object... values) {
+		if (values.length != columns.length) {
+			throw new IllegalArgumentException("expected " + columns.length + " values, got " + values.length);
+		}
+		rows.add(values);
+	}
+	
+	public int size() {
+		return rows.size();
+	}
+	
+	/**
+	 * @param chunkSize righe massime per ogni query, per non superare max_allowed_packet
+	 */
+	public void execute(Connection connection, int chunkSize) throws SQLException {
+		chunkSize = Math.max(chunkSize, 1);
+		PreparedStatement fullChunkStatement = null; // Riutilizzato per tutti i blocchi completi
+		
+		try {
+			for (int start = 0; start < rows.size(); start += chunkSize) {
+				int chunkRows = Math.min(chunkSize, rows.size() - start);
+				
+				if (chunkRows == chunkSize) {
+					if (fullChunkStatement == null) {
+						fullChunkStatement = connection.prepareStatement(buildQuery(chunkSize));
+					}
+					executeChunk(fullChunkStatement, start, chunkRows);
+				} else {
+					try (PreparedStatement lastChunkStatement = connection.prepareStatement(buildQuery(chunkRows))) {
+						executeChunk(lastChunkStatement, start, chunkRows);
+					}
+				}
+			}
+		} finally {
+			if (fullChunkStatement != null) {
+				fullChunkStatement.close();
+			}
+		}
+	}
+	
+	private void executeChunk(PreparedStatement statement, int start, int chunkRows) throws SQLException {
+		int parameterIndex = 1;
+		for (int i = start; i < start + chunkRows; i++) {
+			for (Object value : rows.get(i)) {
+				statement.setObject(parameterIndex++, value);
+			}
+		}
+		statement.executeUpdate();
+	}
+	
+	private String buildQuery(int rowsAmount) {
+		StringBuilder query = new StringBuilder("INSERT INTO ").append(table).append(" (");
+		for (int i = 0; i < columns.length; i++) {
+			query.append(i > 0 ? ", " : "").append(columns[i]);
+		}
+		query.append(") VALUES ");
+		
+		for (int row = 0; row < rowsAmount; row++) {
+			query.append(row > 0 ? ", (" : "(");
+			for (int i = 0; i < columns.length; i++) {
+				query.append(i > 0 ? ", ?" : "?");
+			}
+			query.append(")");
+		}
+		
+		if (onDuplicateKey != OnDuplicateKey.FAIL) {
+			query.append(" ON DUPLICATE KEY UPDATE ");
+			for (int i = 1; i < columns.length; i++) {
+				query.append(i > 1 ? ", " : "").append(columns[i]).append(" = ");
+				if (onDuplicateKey == OnDuplicateKey.ADD) {
+					query.append(columns[i]).append(" + ");
+				}
+				query.append("VALUES(").append(columns[i]).append(")");
+			}
+		}
+		
+		return query.append(";").toString();
+	}
+	
+	
+	public enum OnDuplicateKey {
+		
+		FAIL,
+		REPLACE,
+		ADD
+		
+	}
+
+}
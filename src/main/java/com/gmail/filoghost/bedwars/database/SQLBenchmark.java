@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.bukkit.ChatColor;
+
+import com.gmail.filoghost.bedwars.database.PlayerEvent.PlayerEventType;
+import com.gmail.filoghost.bedwars.settings.MainSettings;
+import com.google.common.collect.Lists;
+
+import lombok.Cleanup;
+
+/**
+ * Confronta il salvataggio degli eventi una riga alla volta con quello a blocchi, su una tabella temporanea
+ * con la stessa struttura di quella degli eventi. La tabella esiste solo per la connessione usata e viene eliminata alla fine.
+ */
+public class SQLBenchmark {
+	
+	private static final String TABLE_BENCHMARK = "bedwars_benchmark";
+	
+	
+	public static List<String> run(int rowsAmount) throws SQLException {
+		// La tabella temporanea esiste solo nella connessione che l'ha creata, quindi si usa sempre la stessa
+		return SQLManager.withConnection(connection -> {
+			List<String> lines = Lists.newArrayList();
+			executeUpdate(connection, "CREATE TEMPORARY TABLE IF NOT EXISTS " + TABLE_BENCHMARK + " LIKE " + SQLManager.TABLE_EVENTS);
+			
+			try {
+				// Come il vecchio salvataggio: una query per riga, fuori da una transazione
+				long startNanos = System.nanoTime();
+				@Cleanup PreparedStatement statement = connection.prepareStatement(
+						"INSERT INTO " + TABLE_BENCHMARK + " (" +
+							SQLColumns.EVENT_PLAYER + ", " +
+							SQLColumns.EVENT_TYPE + ", " +
+							SQLColumns.EVENT_PLAYERS_PER_TEAM + ", " +
+							SQLColumns.EVENT_TEAMS_AMOUNT + ", " +
+							SQLColumns.EVENT_ARENA + ", " +
+							SQLColumns.EVENT_TIME +
+						") VALUES (?, ?, ?, ?, ?, ?);");
+				for (int i = 0; i < rowsAmount; i++) {
+					statement.setString(1, benchmarkPlayer(i));
+					statement.setInt(2, PlayerEventType.KILL.getId());
+					statement.setInt(3, 4);
+					statement.setInt(4, 4);
+					statement.setString(5, "benchmark");
+					statement.setLong(6, System.currentTimeMillis());
+					statement.executeUpdate();
+				}
+				lines.add(formatResult("Una riga per query", rowsAmount, System.nanoTime() - startNanos));
+				
+				executeUpdate(connection, "DELETE FROM " + TABLE_BENCHMARK);
+				
+				startNanos = System.nanoTime();
+				SQLBatchInsert eventsInsert = SQLManager.newEventsInsert(TABLE_BENCHMARK);
+				for (int i = 0; i < rowsAmount; i++) {
+					eventsInsert.addRow(benchmarkPlayer(i), PlayerEventType.KILL.getId(), 4, 4, "benchmark", System.currentTimeMillis());
+				}
+				SQLManager.runTransaction(connection, transaction -> eventsInsert.execute(transaction, MainSettings.mysql_batchSize));
+				lines.add(formatResult("A blocchi di " + MainSettings.mysql_batchSize + ", in transazione", rowsAmount, System.nanoTime() - startNanos));
+				
+			} finally {
+				executeUpdate(connection, "DROP TEMPORARY TABLE IF EXISTS " + TABLE_BENCHMARK);
+			}
+			
+			return lines;
+		});
+	}
+	
+	private static void executeUpdate(Connection connection, String query) throws SQLException {
+		@Cleanup Statement statement = connection.createStatement();
+		statement.executeUpdate(query);
+	}
+	
+	private static String benchmarkPlayer(int index) {
+		return "bench_" + (index % 100);
+	}
+	
+	private static String formatResult(String name, int rowsAmount, long elapsedNanos) {
+		double elapsedMillis = elapsedNanos / 1_000_000.0;
+		long rowsPerSecond = elapsedNanos > 0 ? rowsAmount * 1_000_000_000L / elapsedNanos : 0;
+		return ChatColor.YELLOW + name + ": " + ChatColor.GRAY + String.format("%.1f", elapsedMillis) + "ms, " + rowsPerSecond + " righe/s";
+	}
+
+}
@@ -51,6 +51,9 @@ public class SQLColumns {
 		ANALYTICS_PLAYERS_PER_TEAM = 	"per_team",
 		ANALYTICS_TEAMS_AMOUNT =		"teams",
 		ANALYTICS_ARENA = 				"arena",
-		ANALYTICS_TIME = 				"time";
+		ANALYTICS_TIME = 				"time",
+		
+		JOURNAL_ACK_ID = 				"journal_id",
+		JOURNAL_ACK_SEQUENCE = 			"last_applied";
 	
 }
@@ -28,43 +28,48 @@
  */
 package com.gmail.filoghost.bedwars.database;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.List;
+import java.sql.Statement;
+import java.util.Collection;
 
-import org.bukkit.Bukkit;
-import com.gmail.filoghost.bedwars.Bedwars;
 import com.gmail.filoghost.bedwars.arena.Arena;
-import com.google.common.collect.Lists;
+import com.gmail.filoghost.bedwars.database.SQLBatchInsert.OnDuplicateKey;
+import com.gmail.filoghost.bedwars.settings.MainSettings;
 
 import lombok.Cleanup;
 import lombok.Getter;
-import wild.api.mysql.MySQL;
-import wild.api.mysql.SQLResult;
 
 public class SQLManager {
 		
 	private static final String TABLE_MAIN = "bedwars_players";
 	private static final String TABLE_ANALYTICS = "bedwars_analytics";
-	private static final String TABLE_EVENTS = "bedwars_events";
-	@Getter private static MySQL mysql;
+	private static final String TABLE_JOURNAL_ACK = "bedwars_journal_ack";
+	static final String TABLE_EVENTS = "bedwars_events";
+	@Getter private static ConnectionPool pool;
+	@Getter private static DatabaseExecutor executor;
 	
 	public static void connect(String host, int port, String database, String user, String pass) throws SQLException {
-		mysql = new MySQL(host, port, database, user, pass);
-		mysql.connect();
-	}
-
-	public static void checkConnection() throws SQLException {
-		mysql.isConnectionValid();
+		pool = new ConnectionPool(host, port, database, user, pass, MainSettings.mysql_poolSize, MainSettings.mysql_validateAfterIdleSeconds * 1000L);
+		executor = new DatabaseExecutor(MainSettings.mysql_executorThreads);
 	}
 	
-	public void close() {
-		if (mysql != null) {
-			mysql.close();
+	/**
+	 * Aspetta i task in coda e chiude le connessioni.
+	 */
+	public static void close() {
+		if (executor != null) {
+			executor.shutdown(MainSettings.stats_shutdownWaitMillis);
+		}
+		if (pool != null) {
+			pool.close();
 		}
 	}
 	
 	public static void createTables() throws SQLException {
-		mysql.update("CREATE TABLE IF NOT EXISTS " + TABLE_MAIN + " (" +
+		update("CREATE TABLE IF NOT EXISTS " + TABLE_MAIN + " (" +
 			SQLColumns.PLAYERS_NAME + " varchar(20) NOT NULL, " +
 			SQLColumns.PLAYERS_WINS + " INT NOT NULL, " +
 			SQLColumns.PLAYERS_KILLS + " INT NOT NULL, " +
@@ -74,7 +79,7 @@ public class SQLManager {
 			"PRIMARY KEY(" + SQLColumns.PLAYERS_NAME + ")" +
 		") ENGINE = InnoDB DEFAULT CHARSET = UTF8");
 		
-		mysql.update("CREATE TABLE IF NOT EXISTS " + TABLE_EVENTS + " (" +
+		update("CREATE TABLE IF NOT EXISTS " + TABLE_EVENTS + " (" +
 				SQLColumns.EVENT_PLAYER + " varchar(20) NOT NULL, " +
 				SQLColumns.EVENT_TYPE + " TINYINT NOT NULL, " +
 				SQLColumns.EVENT_PLAYERS_PER_TEAM + " TINYINT unsigned NOT NULL, " +
@@ -83,7 +88,7 @@ public class SQLManager {
 				SQLColumns.EVENT_TIME + " BIGINT unsigned NOT NULL" +
 			") ENGINE = InnoDB DEFAULT CHARSET = UTF8");
 		
-		mysql.update("CREATE TABLE IF NOT EXISTS " + TABLE_ANALYTICS + " (" +
+		update("CREATE TABLE IF NOT EXISTS " + TABLE_ANALYTICS + " (" +
 			SQLColumns.ANALYTICS_KEY + " varchar(20) NOT NULL, " +
 			SQLColumns.ANALYTICS_VALUE + " varchar(20) NOT NULL, " +
 			SQLColumns.ANALYTICS_PLAYERS_PER_TEAM + " TINYINT unsigned NOT NULL, " +
@@ -91,102 +96,224 @@ public class SQLManager {
 			SQLColumns.ANALYTICS_ARENA + " varchar(20) NOT NULL, " +
 			SQLColumns.ANALYTICS_TIME + " BIGINT unsigned NOT NULL" +
 		") ENGINE = InnoDB DEFAULT CHARSET = UTF8");
+		
+		update("CREATE TABLE IF NOT EXISTS " + TABLE_JOURNAL_ACK + " (" +
+			SQLColumns.JOURNAL_ACK_ID + " varchar(36) NOT NULL, " +
+			SQLColumns.JOURNAL_ACK_SEQUENCE + " BIGINT NOT NULL, " +
+			"PRIMARY KEY(" + SQLColumns.JOURNAL_ACK_ID + ")" +
+		") ENGINE = InnoDB DEFAULT CHARSET = UTF8");
 	}
 	
 	
 	public static void insertAnalyticsAsync(String key, String value, Arena arena) {
 		long time = System.currentTimeMillis();
-		Bukkit.getScheduler().runTaskAsynchronously(Bedwars.get(), () -> {
-			try {
-				SQLManager.mysql.preparedUpdate(
-					"INSERT INTO " + TABLE_ANALYTICS + " (" +
-						SQLColumns.ANALYTICS_KEY + ", " +
-						SQLColumns.ANALYTICS_VALUE + ", " +
-						SQLColumns.ANALYTICS_PLAYERS_PER_TEAM + ", " +
-						SQLColumns.ANALYTICS_TEAMS_AMOUNT + ", " +
-						SQLColumns.ANALYTICS_ARENA + ", " +
-						SQLColumns.ANALYTICS_TIME +
-					") VALUES(?, ?, ?, ?, ?, ?);", key, value, arena.getMaxPlayersPerTeam(), arena.getTeams().size(), arena.getName(), time);
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
+		int playersPerTeam = arena.getMaxPlayersPerTeam();
+		int teamsAmount = arena.getTeams().size();
+		String arenaName = arena.getName();
+		
+		executor.execute(() -> {
+			update(
+				"INSERT INTO " + TABLE_ANALYTICS + " (" +
+					SQLColumns.ANALYTICS_KEY + ", " +
+					SQLColumns.ANALYTICS_VALUE + ", " +
+					SQLColumns.ANALYTICS_PLAYERS_PER_TEAM + ", " +
+					SQLColumns.ANALYTICS_TEAMS_AMOUNT + ", " +
+					SQLColumns.ANALYTICS_ARENA + ", " +
+					SQLColumns.ANALYTICS_TIME +
+				") VALUES(?, ?, ?, ?, ?, ?);", key, value, playersPerTeam, teamsAmount, arenaName, time);
 		});
 	}
 	
 	
 	public static PlayerData getStats(String playerName) throws SQLException {
-		@Cleanup SQLResult result = mysql.preparedQuery("SELECT * FROM " + TABLE_MAIN + " WHERE " + SQLColumns.PLAYERS_NAME + " = ?", playerName);
-		if (result.next()) {
-			return new PlayerData(
-					result.getInt(SQLColumns.PLAYERS_WINS),
-					result.getInt(SQLColumns.PLAYERS_KILLS),
-					result.getInt(SQLColumns.PLAYERS_FINAL_KILLS),
-					result.getInt(SQLColumns.PLAYERS_DEATHS),
-					result.getInt(SQLColumns.PLAYERS_DESTROYED_BEDS));
-		} else {
-			return new PlayerData(0, 0, 0, 0, 0);
+		return withConnection(connection -> {
+			@Cleanup PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + TABLE_MAIN + " WHERE " + SQLColumns.PLAYERS_NAME + " = ?");
+			statement.setString(1, playerName);
+			@Cleanup ResultSet result = statement.executeQuery();
+			if (result.next()) {
+				return new PlayerData(
+						playerName,
+						result.getInt(SQLColumns.PLAYERS_WINS),
+						result.getInt(SQLColumns.PLAYERS_KILLS),
+						result.getInt(SQLColumns.PLAYERS_FINAL_KILLS),
+						result.getInt(SQLColumns.PLAYERS_DEATHS),
+						result.getInt(SQLColumns.PLAYERS_DESTROYED_BEDS));
+			} else {
+				return new PlayerData(playerName, 0, 0, 0, 0, 0);
+			}
+		});
+	}
+	
+	/**
+	 * Somma le statistiche ai valori nel database e inserisce gli eventi, in una sola transazione e con query da più righe.
+	 * Nella stessa transazione salva l'ultimo record del journal applicato, così dopo un crash non viene sommato due volte.
+	 */
+	public static void saveDeltas(Collection<StatsDelta> deltas, String journalId) throws SQLException {
+		SQLBatchInsert playersInsert = new SQLBatchInsert(TABLE_MAIN, OnDuplicateKey.ADD,
+				SQLColumns.PLAYERS_NAME,
+				SQLColumns.PLAYERS_WINS,
+				SQLColumns.PLAYERS_KILLS,
+				SQLColumns.PLAYERS_FINAL_KILLS,
+				SQLColumns.PLAYERS_DEATHS,
+				SQLColumns.PLAYERS_DESTROYED_BEDS);
+		SQLBatchInsert eventsInsert = newEventsInsert(TABLE_EVENTS);
+		
+		for (StatsDelta delta : deltas) {
+			playersInsert.addRow(delta.getPlayerName(), delta.getWins(), delta.getKills(), delta.getFinalKills(), delta.getDeaths(), delta.getDestroyedBeds());
+			for (PlayerEvent event : delta.getEvents()) {
+				eventsInsert.addRow(delta.getPlayerName(), event.getType().getId(), event.getPlayersPerTeam(), event.getTeamsAmount(), event.getArena(), event.getTimestamp());
+			}
 		}
+		
+		runTransaction(connection -> {
+			playersInsert.execute(connection, MainSettings.mysql_batchSize);
+			eventsInsert.execute(connection, MainSettings.mysql_batchSize);
+			updateJournalAck(connection, journalId, deltas);
+		});
 	}
 	
-	public static void savePlayerData(String playerName, PlayerData data) throws SQLException {
-		mysql.preparedUpdate(
-				"INSERT INTO " + TABLE_MAIN + " (" +
-					SQLColumns.PLAYERS_NAME + ", " +
-					SQLColumns.PLAYERS_WINS + ", " +
-					SQLColumns.PLAYERS_KILLS + ", " +
-					SQLColumns.PLAYERS_FINAL_KILLS + ", " +
-					SQLColumns.PLAYERS_DEATHS + ", " +
-					SQLColumns.PLAYERS_DESTROYED_BEDS +
-				") VALUES(?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE " +
-					SQLColumns.PLAYERS_NAME + " = ?, " +
-					SQLColumns.PLAYERS_WINS + " = ?, " +
-					SQLColumns.PLAYERS_KILLS + " = ?, " +
-					SQLColumns.PLAYERS_FINAL_KILLS + " = ?, " +
-					SQLColumns.PLAYERS_DEATHS + " = ?, " +
-					SQLColumns.PLAYERS_DESTROYED_BEDS + " = ?;",
-					
-				playerName, data.getWins(), data.getKills(), data.getFinalKills(), data.getDeaths(), data.getDestroyedBeds(),
-				playerName, data.getWins(), data.getKills(), data.getFinalKills(), data.getDeaths(), data.getDestroyedBeds());
+	/**
+	 * @return l'ultimo record del journal già applicato al database, -1 se nessuno
+	 */
+	public static long getJournalAck(String journalId) throws SQLException {
+		return withConnection(connection -> {
+			@Cleanup PreparedStatement statement = connection.prepareStatement("SELECT " + SQLColumns.JOURNAL_ACK_SEQUENCE + " FROM " + TABLE_JOURNAL_ACK + " WHERE " + SQLColumns.JOURNAL_ACK_ID + " = ?");
+			statement.setString(1, journalId);
+			@Cleanup ResultSet result = statement.executeQuery();
+			return result.next() ? result.getLong(SQLColumns.JOURNAL_ACK_SEQUENCE) : -1L;
+		});
+	}
+	
+	private static void updateJournalAck(Connection connection, String journalId, Collection<StatsDelta> deltas) throws SQLException {
+		long sequence = -1;
+		for (StatsDelta delta : deltas) {
+			sequence = Math.max(sequence, delta.getJournalSequence());
+		}
+		if (sequence < 0) {
+			return; // Nessuna modifica salvata nel journal
+		}
 		
+		// Le modifiche arrivano in ordine di sequenza, quindi anche tutte le precedenti sono state applicate
+		try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + TABLE_JOURNAL_ACK + " (" +
+				SQLColumns.JOURNAL_ACK_ID + ", " +
+				SQLColumns.JOURNAL_ACK_SEQUENCE +
+			") VALUES (?, ?) ON DUPLICATE KEY UPDATE " +
+				SQLColumns.JOURNAL_ACK_SEQUENCE + " = GREATEST(" + SQLColumns.JOURNAL_ACK_SEQUENCE + ", VALUES(" + SQLColumns.JOURNAL_ACK_SEQUENCE + "));")) {
+			statement.setString(1, journalId);
+			statement.setLong(2, sequence);
+			statement.executeUpdate();
+		}
+	}
+	
+	static SQLBatchInsert newEventsInsert(String table) {
+		return new SQLBatchInsert(table, OnDuplicateKey.FAIL,
+				SQLColumns.EVENT_PLAYER,
+				SQLColumns.EVENT_TYPE,
+				SQLColumns.EVENT_PLAYERS_PER_TEAM,
+				SQLColumns.EVENT_TEAMS_AMOUNT,
+				SQLColumns.EVENT_ARENA,
+				SQLColumns.EVENT_TIME);
+	}
+	
+	static void runTransaction(SQLTask task) throws SQLException {
+		withConnection(connection -> {
+			runTransaction(connection, task);
+			return null;
+		});
+	}
+	
+	static void runTransaction(Connection connection, SQLTask task) throws SQLException {
+		connection.setAutoCommit(false);
 		try {
-			for (PlayerEvent event : data.getEvents()) {
-				mysql.preparedUpdate(
-						"INSERT INTO " + TABLE_EVENTS + " (" +
-							SQLColumns.EVENT_PLAYER + ", " +
-							SQLColumns.EVENT_TYPE + ", " +
-							SQLColumns.EVENT_PLAYERS_PER_TEAM + ", " +
-							SQLColumns.EVENT_TEAMS_AMOUNT + ", " +
-							SQLColumns.EVENT_ARENA + ", " +
-							SQLColumns.EVENT_TIME +
-						") VALUES (?, ?, ?, ?, ?, ?);",
-						
-						playerName, event.getType().getId(), event.getPlayersPerTeam(), event.getTeamsAmount(), event.getArena(), event.getTimestamp());
-			}
+			task.run(connection);
+			connection.commit();
+		} catch (SQLException | RuntimeException e) {
+			connection.rollback();
+			throw e;
 		} finally {
-			data.getEvents().clear();
+			connection.setAutoCommit(true);
 		}
 	}
-
-	public static List<SQLSingleStat> getTop(String statSQLColumn, int limit) throws SQLException {
-		@Cleanup SQLResult result = mysql.preparedQuery("SELECT " + SQLColumns.PLAYERS_NAME + ", " + statSQLColumn + " FROM " + TABLE_MAIN + " ORDER BY " + statSQLColumn + " DESC LIMIT " + limit);
-			
-		List<SQLSingleStat> stats = Lists.newArrayList();
-		while (result.next()) {
-			stats.add(new SQLSingleStat(result.getString(SQLColumns.PLAYERS_NAME), result.getInt(statSQLColumn)));
+	
+	/**
+	 * Prende una connessione dal pool e la restituisce alla fine, anche in caso di errore.
+	 */
+	static <T> T withConnection(SQLFunction<T> function) throws SQLException {
+		Connection connection = pool.borrow(MainSettings.mysql_borrowTimeoutMillis);
+		try {
+			return function.apply(connection);
+		} finally {
+			pool.release(connection);
 		}
+	}
+	
+	static void update(String query, Object... params) throws SQLException {
+		withConnection(connection -> {
+			@Cleanup PreparedStatement statement = connection.prepareStatement(query);
+			for (int i = 0; i < params.length; i++) {
+				statement.setObject(i + 1, params[i]);
+			}
+			statement.executeUpdate();
+			return null;
+		});
+	}
+	
+	
+	@FunctionalInterface
+	interface SQLTask {
+		
+		void run(Connection connection) throws SQLException;
+		
+	}
+	
+	@FunctionalInterface
+	interface SQLFunction<T> {
+		
+		T apply(Connection connection) throws SQLException;
+		
+	}
+
+	/**
+	 * Legge nome, vittorie e uccisioni finali di tutti i giocatori, una riga alla volta senza caricare l'intera tabella in memoria.
+	 */
+	public static void forEachPlayerStats(PlayerStatsConsumer consumer) throws SQLException {
+		withConnection(connection -> {
+			@Cleanup Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			statement.setFetchSize(Integer.MIN_VALUE); // Streaming delle righe con Connector/J
+			@Cleanup ResultSet result = statement.executeQuery("SELECT " + SQLColumns.PLAYERS_NAME + ", " + SQLColumns.PLAYERS_WINS + ", " + SQLColumns.PLAYERS_FINAL_KILLS + " FROM " + TABLE_MAIN);
 			
-		return stats;
+			while (result.next()) {
+				consumer.accept(result.getString(SQLColumns.PLAYERS_NAME), result.getInt(SQLColumns.PLAYERS_WINS), result.getInt(SQLColumns.PLAYERS_FINAL_KILLS));
+			}
+			return null;
+		});
+	}
+	
+	
+	@FunctionalInterface
+	public interface PlayerStatsConsumer {
+		
+		void accept(String playerName, int wins, int finalKills);
+		
 	}
 
-	public static void resetStats() throws SQLException {
-		mysql.update("UPDATE " + TABLE_MAIN + " SET " +
-			SQLColumns.PLAYERS_WINS + " = 0, " +
-			SQLColumns.PLAYERS_KILLS + " = 0, " +
-			SQLColumns.PLAYERS_FINAL_KILLS + " = 0, " +
-			SQLColumns.PLAYERS_DEATHS + " = 0, " +
-			SQLColumns.PLAYERS_DESTROYED_BEDS + " = 0;"
-		);
-		mysql.update("DELETE FROM " + TABLE_EVENTS + ";");
+	/**
+	 * @param discarded modifiche in attesa che l'azzeramento scarta, da segnare come applicate nel journal
+	 */
+	public static void resetStats(Collection<StatsDelta> discarded, String journalId) throws SQLException {
+		runTransaction(connection -> {
+			try (Statement statement = connection.createStatement()) {
+				statement.executeUpdate("UPDATE " + TABLE_MAIN + " SET " +
+					SQLColumns.PLAYERS_WINS + " = 0, " +
+					SQLColumns.PLAYERS_KILLS + " = 0, " +
+					SQLColumns.PLAYERS_FINAL_KILLS + " = 0, " +
+					SQLColumns.PLAYERS_DEATHS + " = 0, " +
+					SQLColumns.PLAYERS_DESTROYED_BEDS + " = 0;"
+				);
+				statement.executeUpdate("DELETE FROM " + TABLE_EVENTS + ";");
+			}
+			updateJournalAck(connection, journalId, discarded);
+		});
 	}
 
 }
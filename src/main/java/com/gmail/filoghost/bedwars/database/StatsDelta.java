@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.database;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Statistiche guadagnate da un giocatore dall'ultimo salvataggio, da sommare a quelle nel database.
+ * Viene modificato solo dal thread principale finché non viene consegnato allo StatsWriter, poi solo da quest'ultimo.
+ */
+@Getter
+public class StatsDelta {
+	
+	private String playerName;
+	private int wins, kills, finalKills, deaths, destroyedBeds;
+	private final List<PlayerEvent> events = Lists.newArrayList();
+	private int mergedAmount = 1; // Quante modifiche consegnate separatamente contiene, dopo essere state unite
+	@Getter(AccessLevel.PACKAGE) private final List<StatsJournal.Segment> journalSegments = Lists.newArrayList(); // Dove è salvata nel journal
+	@Getter(AccessLevel.PACKAGE) private long journalSequence = -1; // Ultimo record del journal che contiene, -1 se nessuno
+	
+	
+	StatsDelta() {
+		
+	}
+	
+	void setPlayerName(String playerName) {
+		this.playerName = playerName;
+	}
+	
+	void setJournalSequence(long journalSequence) {
+		this.journalSequence = journalSequence;
+	}
+	
+	void add(PlayerEvent event) {
+		switch (event.getType()) {
+			case WIN:
+				wins++;
+				break;
+			case KILL:
+				kills++;
+				break;
+			case FINAL_KILL:
+				finalKills++;
+				break;
+			case DEATH:
+				deaths++;
+				break;
+			case DESTROYED_BED:
+				destroyedBeds++;
+				break;
+		}
+		events.add(event);
+	}
+	
+	void merge(StatsDelta other) {
+		wins += other.wins;
+		kills += other.kills;
+		finalKills += other.finalKills;
+		deaths += other.deaths;
+		destroyedBeds += other.destroyedBeds;
+		events.addAll(other.events);
+		mergedAmount += other.mergedAmount;
+		journalSegments.addAll(other.journalSegments);
+		journalSequence = Math.max(journalSequence, other.journalSequence);
+	}
+	
+	String getKey() {
+		return playerName.toLowerCase();
+	}
+
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.database;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+
+import com.gmail.filoghost.bedwars.database.PlayerEvent.PlayerEventType;
+import com.google.common.collect.Lists;
+
+import lombok.Getter;
+
+/**
+ * Journal su file delle modifiche alle statistiche non ancora scritte nel database, per non perderle se il database
+ * non è raggiungibile o il server si chiude male. È diviso in segmenti: ogni segmento viene eliminato quando tutte le
+ * sue modifiche sono state scritte, e quelli rimasti vengono riletti all'avvio.
+ * 
+ * Ogni record è [lunghezza][CRC32][dati]: un record scritto a metà durante un crash viene riconosciuto e scartato.
+ * I record hanno un numero di sequenza crescente, e il database salva l'ultimo applicato nella stessa transazione delle statistiche:
+ * se il server si chiude dopo il commit ma prima di eliminare il segmento, i record già applicati non vengono sommati di nuovo.
+ * Le scritture avvengono dal thread principale senza sincronizzazione col disco, il thread di scrittura chiama sync()
+ * prima di ogni transazione, così il costo di fsync è diviso tra tutte le modifiche del blocco.
+ */
+public class StatsJournal {
+	
+	private static final int MAGIC = 0x42574A31;
+	private static final String EXTENSION = ".journal";
+	private static final String ID_FILE = "journal.id";
+	private static final int SEGMENT_MAX_BYTES = 1024 * 1024;
+	private static final int RECORD_MAX_BYTES = 1024 * 1024;
+	
+	private final File folder;
+	@Getter private final String id; // Distingue i journal di più server che usano lo stesso database
+	private final List<Segment> unsyncedSegments = Lists.newArrayList();
+	private Segment currentSegment;
+	private long nextSegmentId;
+	private long nextSequence;
+	
+	
+	public StatsJournal(File folder) throws IOException {
+		this.folder = folder;
+		folder.mkdirs();
+		
+		Path idFile = new File(folder, ID_FILE).toPath();
+		if (Files.exists(idFile)) {
+			id = new String(Files.readAllBytes(idFile), StandardCharsets.UTF_8).trim();
+		} else {
+			id = UUID.randomUUID().toString();
+			Files.write(idFile, id.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+	
+	/**
+	 * Rilegge le modifiche rimaste dall'ultima esecuzione. Da chiamare una volta, prima di append().
+	 * @param appliedSequence l'ultimo record già applicato al database, quelli fino a questo vengono scartati
+	 */
+	public List<StatsDelta> recover(long appliedSequence) throws IOException {
+		List<StatsDelta> recovered = Lists.newArrayList();
+		int alreadyApplied = 0;
+		nextSequence = appliedSequence + 1;
+		
+		File[] files = folder.listFiles((dir, name) -> name.endsWith(EXTENSION));
+		Arrays.sort(files, Comparator.comparingLong(StatsJournal::parseSegmentId));
+		
+		for (File file : files) {
+			long segmentId = parseSegmentId(file);
+			nextSegmentId = Math.max(nextSegmentId, segmentId + 1);
+			
+			Segment segment = new Segment(file);
+			segment.synced = true;
+			for (StatsDelta delta : readSegment(file)) {
+				nextSequence = Math.max(nextSequence, delta.getJournalSequence() + 1);
+				if (delta.getJournalSequence() <= appliedSequence) {
+					alreadyApplied++;
+					continue;
+				}
+				delta.getJournalSegments().add(segment);
+				segment.unacknowledged++;
+				recovered.add(delta);
+			}
+			deleteIfAcknowledged(segment);
+		}
+		
+		if (alreadyApplied > 0) {
+			Bukkit.getConsoleSender().sendMessage(ChatColor.YELLOW + "Ignorate " + alreadyApplied + " modifiche del journal già salvate nel database.");
+		}
+		
+		openNewSegment();
+		return recovered;
+	}
+	
+	/**
+	 * Thread principale.
+	 */
+	public synchronized void append(StatsDelta delta) throws IOException {
+		long sequence = nextSequence++;
+		byte[] payload = encode(delta, sequence);
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		
+		ByteBuffer record = ByteBuffer.allocate(4 + 8 + payload.length);
+		record.putInt(payload.length);
+		record.putLong(crc.getValue());
+		record.put(payload);
+		record.flip();
+		while (record.hasRemaining()) {
+			currentSegment.channel.write(record);
+		}
+		
+		currentSegment.size += record.limit();
+		currentSegment.unacknowledged++;
+		delta.getJournalSegments().add(currentSegment);
+		delta.setJournalSequence(sequence);
+		
+		if (currentSegment.size >= SEGMENT_MAX_BYTES) {
+			unsyncedSegments.add(currentSegment);
+			openNewSegment();
+		}
+	}
+	
+	/**
+	 * Porta su disco tutto ciò che è stato scritto finora. Il segmento corrente viene chiuso e ne viene aperto uno nuovo,
+	 * così le scritture del thread principale non aspettano fsync.
+	 */
+	public void sync() throws IOException {
+		List<Segment> toSync;
+		synchronized (this) {
+			if (currentSegment.size > 0) {
+				unsyncedSegments.add(currentSegment);
+				openNewSegment();
+			}
+			toSync = Lists.newArrayList(unsyncedSegments);
+			unsyncedSegments.clear();
+		}
+		
+		IOException firstError = null;
+		for (Segment segment : toSync) {
+			try {
+				segment.channel.force(false);
+				segment.channel.close();
+			} catch (IOException e) {
+				if (firstError == null) {
+					firstError = e;
+				}
+			}
+			
+			synchronized (this) {
+				segment.channel = null;
+				segment.synced = true;
+				deleteIfAcknowledged(segment);
+			}
+		}
+		
+		if (firstError != null) {
+			throw firstError;
+		}
+	}
+	
+	/**
+	 * Le modifiche sono state scritte nel database, o scartate di proposito.
+	 */
+	public synchronized void acknowledge(Iterable<StatsDelta> deltas) {
+		for (StatsDelta delta : deltas) {
+			for (Segment segment : delta.getJournalSegments()) {
+				segment.unacknowledged--;
+				deleteIfAcknowledged(segment);
+			}
+			delta.getJournalSegments().clear();
+		}
+	}
+	
+	public void close() {
+		try {
+			sync();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		synchronized (this) {
+			try {
+				currentSegment.channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			currentSegment.channel = null;
+			currentSegment.synced = true;
+			deleteIfAcknowledged(currentSegment);
+		}
+	}
+	
+	private void openNewSegment() throws IOException {
+		File file = new File(folder, String.format("stats-%012d", nextSegmentId) + EXTENSION);
+		nextSegmentId++;
+		Segment segment = new Segment(file);
+		segment.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		
+		ByteBuffer header = ByteBuffer.allocate(4);
+		header.putInt(MAGIC);
+		header.flip();
+		while (header.hasRemaining()) {
+			segment.channel.write(header);
+		}
+		
+		currentSegment = segment;
+	}
+	
+	private void deleteIfAcknowledged(Segment segment) {
+		// Il segmento corrente e quelli non ancora sincronizzati possono ancora ricevere o perdere dati
+		if (segment.synced && segment.unacknowledged <= 0 && segment.file.exists()) {
+			if (!segment.file.delete()) {
+				Bukkit.getConsoleSender().sendMessage(ChatColor.RED + "Impossibile eliminare " + segment.file.getName());
+			}
+		}
+	}
+	
+	private static List<StatsDelta> readSegment(File file) throws IOException {
+		List<StatsDelta> deltas = Lists.newArrayList();
+		
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (file.length() < 4 || input.readInt() != MAGIC) {
+				Bukkit.getConsoleSender().sendMessage(ChatColor.RED + "Journal delle statistiche non valido: " + file.getName());
+				return deltas;
+			}
+			
+			while (true) {
+				int length;
+				try {
+					length = input.readInt();
+				} catch (EOFException e) {
+					break; // Fine normale del file
+				}
+				
+				try {
+					if (length <= 0 || length > RECORD_MAX_BYTES) {
+						throw new IOException("invalid record length " + length);
+					}
+					long expectedCrc = input.readLong();
+					byte[] payload = new byte[length];
+					input.readFully(payload);
+					
+					CRC32 crc = new CRC32();
+					crc.update(payload);
+					if (crc.getValue() != expectedCrc) {
+						throw new IOException("checksum mismatch");
+					}
+					deltas.add(decode(payload));
+					
+				} catch (IOException e) {
+					// Record incompleto o danneggiato, di solito l'ultimo scritto prima di un crash
+					Bukkit.getConsoleSender().sendMessage(ChatColor.RED + "Journal delle statistiche danneggiato (" + file.getName() + ", " + e.getMessage() + "), recuperate " + deltas.size() + " modifiche.");
+					break;
+				}
+			}
+		}
+		
+		return deltas;
+	}
+	
+	private static byte[] encode(StatsDelta delta, long sequence) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + delta.getEvents().size() * 32);
+		DataOutputStream output = new DataOutputStream(bytes);
+		
+		// I contatori derivano dagli eventi, basta salvare quelli
+		output.writeLong(sequence);
+		output.writeUTF(delta.getPlayerName());
+		output.writeInt(delta.getEvents().size());
+		for (PlayerEvent event : delta.getEvents()) {
+			output.writeByte(event.getType().getId());
+			output.writeInt(event.getPlayersPerTeam());
+			output.writeInt(event.getTeamsAmount());
+			output.writeUTF(event.getArena());
+			output.writeLong(event.getTimestamp());
+		}
+		
+		output.flush();
+		return bytes.toByteArray();
+	}
+	
+	private static StatsDelta decode(byte[] payload) throws IOException {
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+		
+		StatsDelta delta = new StatsDelta();
+		delta.setJournalSequence(input.readLong());
+		delta.setPlayerName(input.readUTF());
+		int eventsAmount = input.readInt();
+		for (int i = 0; i < eventsAmount; i++) {
+			PlayerEventType type = PlayerEventType.fromId(input.readByte());
+			if (type == null) {
+				throw new IOException("unknown event type");
+			}
+			delta.add(new PlayerEvent(type, input.readInt(), input.readInt(), input.readUTF(), input.readLong()));
+		}
+		
+		return delta;
+	}
+	
+	private static long parseSegmentId(File file) {
+		String name = file.getName();
+		try {
+			return Long.parseLong(name.substring(name.indexOf('-') + 1, name.length() - EXTENSION.length()));
+		} catch (NumberFormatException | IndexOutOfBoundsException e) {
+			return -1;
+		}
+	}
+	
+	
+	static class Segment {
+		
+		private final File file;
+		private FileChannel channel; // Null se già chiuso
+		private long size;
+		private int unacknowledged;
+		private boolean synced;
+		
+		private Segment(File file) {
+			this.file = file;
+		}
+		
+	}
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.database;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.plugin.IllegalPluginAccessException;
+
+import com.gmail.filoghost.bedwars.Bedwars;
+import com.gmail.filoghost.bedwars.settings.MainSettings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import lombok.Getter;
+
+/**
+ * Unico thread che scrive le statistiche nel database. Il thread principale consegna le modifiche con submit() senza mai aspettare:
+ * se la coda è piena restano in attesa e vengono riconsegnate al prossimo submit() o flushOverflow().
+ * Le modifiche dello stesso giocatore vengono unite prima di essere scritte, e in caso di errore vengono riprovate.
+ */
+public class StatsWriter {
+	
+	private static final int MAX_DRAIN = 1000;
+	private static final long RETRY_DELAY_MILLIS = 5000;
+	private static final StatsDelta RESET_MARKER = new StatsDelta(); // Messo in coda per separare le modifiche da scartare con l'azzeramento
+	
+	private final BlockingQueue<StatsDelta> queue = new ArrayBlockingQueue<>(MainSettings.stats_queueSize);
+	private final Deque<StatsDelta> overflow = new ArrayDeque<>(); // Solo thread principale
+	
+	// Modifiche consegnate ma non ancora scritte, per far aspettare il caricamento al login
+	private final Map<String, Integer> unwrittenByPlayer = Maps.newHashMap();
+	
+	private final StatsJournal journal;
+	private final Thread thread;
+	private volatile boolean running = true;
+	private final Queue<Consumer<Boolean>> resetCallbacks = new ConcurrentLinkedQueue<>(); // Una per ogni RESET_MARKER in coda
+	
+	@Getter private volatile long writtenDeltas;
+	@Getter private volatile long failedWrites;
+	
+	
+	public StatsWriter(StatsJournal journal) {
+		this.journal = journal;
+		thread = new Thread(this::run, "Bedwars stats writer");
+		thread.setDaemon(true);
+	}
+	
+	/**
+	 * Rimette in coda le modifiche rimaste nel journal dall'ultima esecuzione, tranne quelle già applicate al database, e avvia il thread.
+	 */
+	public StatsWriter start() throws IOException, SQLException {
+		List<StatsDelta> recovered = journal.recover(SQLManager.getJournalAck(journal.getId()));
+		for (StatsDelta delta : recovered) {
+			enqueue(delta);
+		}
+		if (!recovered.isEmpty()) {
+			Bukkit.getConsoleSender().sendMessage(ChatColor.YELLOW + "Recuperate " + recovered.size() + " modifiche alle statistiche dal journal.");
+		}
+		
+		thread.start();
+		return this;
+	}
+	
+	/**
+	 * Thread principale. La modifica viene scritta nel journal prima di essere messa in coda.
+	 */
+	public void submit(StatsDelta delta) {
+		try {
+			journal.append(delta);
+		} catch (IOException e) {
+			// Viene comunque salvata nel database, ma non sopravvive a un crash
+			e.printStackTrace();
+		}
+		enqueue(delta);
+	}
+	
+	private void enqueue(StatsDelta delta) {
+		if (delta != RESET_MARKER) {
+			synchronized (unwrittenByPlayer) {
+				unwrittenByPlayer.merge(delta.getKey(), 1, Integer::sum);
+			}
+		}
+		overflow.add(delta);
+		flushOverflow();
+	}
+	
+	/**
+	 * Thread principale.
+	 */
+	public void flushOverflow() {
+		while (!overflow.isEmpty() && queue.offer(overflow.peek())) {
+			overflow.poll();
+		}
+	}
+	
+	public int getQueueSize() {
+		return queue.size() + overflow.size();
+	}
+	
+	/**
+	 * Thread principale. Azzera il database quando il thread di scrittura arriva a questo punto della coda:
+	 * se ci riesce scarta le modifiche consegnate prima, altrimenti le scrive normalmente. Quelle consegnate dopo non vengono toccate.
+	 * @param callback chiamata nel thread principale con true se l'azzeramento è riuscito
+	 */
+	public void requestReset(Consumer<Boolean> callback) {
+		resetCallbacks.add(callback);
+		enqueue(RESET_MARKER); // Non va nel journal, dopo un crash l'azzeramento non è avvenuto
+	}
+	
+	/**
+	 * Da chiamare in un thread asincrono, prima di leggere le statistiche di un giocatore dal database.
+	 */
+	public void awaitWritten(String playerName, long timeoutMillis) throws InterruptedException {
+		String key = playerName.toLowerCase();
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		
+		synchronized (unwrittenByPlayer) {
+			long remaining;
+			while (unwrittenByPlayer.containsKey(key) && (remaining = deadline - System.currentTimeMillis()) > 0) {
+				unwrittenByPlayer.wait(remaining);
+			}
+		}
+	}
+	
+	/**
+	 * Smette di accettare modifiche e aspetta che quelle già consegnate vengano scritte.
+	 */
+	public void shutdown(long timeoutMillis) {
+		// La coda potrebbe essere piena, ma il thread la sta svuotando
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (!overflow.isEmpty() && System.currentTimeMillis() < deadline) {
+			flushOverflow();
+			Thread.yield();
+		}
+		
+		running = false;
+		try {
+			thread.join(Math.max(deadline - System.currentTimeMillis(), 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		if (thread.isAlive() || !overflow.isEmpty()) {
+			Bukkit.getConsoleSender().sendMessage(ChatColor.RED + "Non è stato possibile salvare tutte le statistiche, modifiche in coda: " + getQueueSize() + ". Verranno recuperate dal journal al prossimo avvio.");
+		}
+		if (!thread.isAlive()) {
+			journal.close();
+		}
+	}
+	
+	private void run() {
+		Map<String, StatsDelta> pending = Maps.newLinkedHashMap(); // Modifiche unite per giocatore
+		List<StatsDelta> drained = Lists.newArrayList();
+		
+		while (running || !queue.isEmpty() || !pending.isEmpty()) {
+			try {
+				StatsDelta first = queue.poll(1, TimeUnit.SECONDS);
+				if (first != null) {
+					drained.add(first);
+					queue.drainTo(drained, MAX_DRAIN);
+				}
+			} catch (InterruptedException e) {
+				break;
+			}
+			
+			for (StatsDelta delta : drained) {
+				if (delta == RESET_MARKER) {
+					// In pending ci sono solo le modifiche consegnate prima della richiesta
+					resetDatabase(pending);
+					continue;
+				}
+				
+				StatsDelta existing = pending.get(delta.getKey());
+				if (existing != null) {
+					existing.merge(delta);
+				} else {
+					pending.put(delta.getKey(), delta);
+				}
+			}
+			drained.clear();
+			
+			if (!pending.isEmpty()) {
+				try {
+					journal.sync();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+				
+				try {
+					SQLManager.saveDeltas(pending.values(), journal.getId());
+					writtenDeltas += pending.size();
+					journal.acknowledge(pending.values());
+					markWritten(pending.values());
+					pending.clear();
+					
+				} catch (SQLException e) {
+					failedWrites++;
+					e.printStackTrace();
+					if (!running) {
+						// In chiusura non si può aspettare il database all'infinito
+						Bukkit.getConsoleSender().sendMessage(ChatColor.RED + "Statistiche non salvate per " + pending.size() + " giocatori, verranno recuperate dal journal al prossimo avvio.");
+						markWritten(pending.values());
+						pending.clear();
+					} else {
+						try {
+							Thread.sleep(RETRY_DELAY_MILLIS);
+						} catch (InterruptedException e2) {
+							break;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	private void resetDatabase(Map<String, StatsDelta> pending) {
+		Consumer<Boolean> callback = resetCallbacks.poll();
+		boolean success;
+		try {
+			SQLManager.resetStats(pending.values(), journal.getId());
+			success = true;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			success = false;
+			Bukkit.getConsoleSender().sendMessage(ChatColor.RED + "Reset delle statistiche non riuscito, le modifiche in coda verranno salvate normalmente.");
+		}
+		
+		if (success) {
+			journal.acknowledge(pending.values());
+			markWritten(pending.values());
+			pending.clear();
+		}
+		
+		boolean result = success;
+		try {
+			Bukkit.getScheduler().runTask(Bedwars.get(), () -> callback.accept(result));
+		} catch (IllegalPluginAccessException e) {
+			// Il plugin è già stato disabilitato, nessuno aspetta più il risultato
+		}
+	}
+	
+	private void markWritten(Iterable<StatsDelta> deltas) {
+		synchronized (unwrittenByPlayer) {
+			for (StatsDelta delta : deltas) {
+				unwrittenByPlayer.computeIfPresent(delta.getKey(), (key, amount) -> amount > delta.getMergedAmount() ? amount - delta.getMergedAmount() : null);
+			}
+			unwrittenByPlayer.notifyAll();
+		}
+	}
+
+}
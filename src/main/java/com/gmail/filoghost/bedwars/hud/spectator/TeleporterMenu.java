@@ -52,6 +52,7 @@ import wild.api.sound.SoundEnum;
 
 import com.gmail.filoghost.bedwars.arena.Arena;
 import com.gmail.filoghost.bedwars.arena.PlayerStatus;
+import com.gmail.filoghost.bedwars.arena.Team;
 import com.gmail.filoghost.bedwars.utils.Utils;
 import com.google.common.collect.Lists;
 
@@ -74,10 +75,8 @@ public class TeleporterMenu {
 	public void update() {
 		Collection<PlayerStatus> gamerStatuses = Lists.newArrayList();
 		
-		for (PlayerStatus playerStatus : arena.getPlayerStatuses()) {
-			if (playerStatus.getTeam() != null && !playerStatus.isSpectator()) {
-				gamerStatuses.add(playerStatus);
-			}
+		for (Team team : arena.getTeams()) {
+			gamerStatuses.addAll(arena.getTeamIndex().getLivePlayers(team));
 		}
 		
 		// Approssima per eccesso, minimo 1 pagina
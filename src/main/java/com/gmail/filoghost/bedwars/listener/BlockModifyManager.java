@@ -37,6 +37,7 @@ import org.bukkit.event.Cancellable;
 import com.gmail.filoghost.bedwars.Bedwars;
 import com.gmail.filoghost.bedwars.Perms;
 import com.gmail.filoghost.bedwars.arena.Arena;
+import com.gmail.filoghost.bedwars.arena.ArenaLocator;
 import com.gmail.filoghost.bedwars.utils.Utils;
 
 public class BlockModifyManager {
@@ -78,10 +79,9 @@ public class BlockModifyManager {
 	}
 	
 	public static void onLiquidFlow(Cancellable event, Block from, Block to) {
-		for (Arena arena : Bedwars.getAllArenas()) {
-			if (arena.getRegion().isInside(from)) {
-				arena.getEvents().onFlow(event, to);
-			}
+		Arena arena = ArenaLocator.getArenaAt(from);
+		if (arena != null) {
+			arena.getEvents().onFlow(event, to);
 		}
 	}
 
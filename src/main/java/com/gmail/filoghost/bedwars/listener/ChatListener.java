@@ -100,10 +100,8 @@ public class ChatListener implements Listener {
 	
 	
 	private void addPlayersByTeam(Collection<Player> recipients, Arena arena, @Nullable Team team) {
-		for (PlayerStatus playerStatus : arena.getPlayerStatuses()) {
-			if (playerStatus.getTeam() == team) {
-				recipients.add(playerStatus.getPlayer());
-			}
+		for (PlayerStatus playerStatus : arena.getTeamIndex().getPlayers(team)) {
+			recipients.add(playerStatus.getPlayer());
 		}
 	}
 	
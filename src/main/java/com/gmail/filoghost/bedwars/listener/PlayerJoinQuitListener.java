@@ -30,7 +30,6 @@ package com.gmail.filoghost.bedwars.listener;
 
 import java.sql.SQLException;
 
-import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -89,13 +88,7 @@ public class PlayerJoinQuitListener implements Listener {
 			quitterArena.removePlayer(event.getPlayer());
 		}
 		
-		Bukkit.getScheduler().runTaskAsynchronously(Bedwars.get(), () -> {
-			try {
-				Bedwars.unloadStatsToDatabase(quitter.getName());
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-		});
+		Bedwars.unloadStats(quitter.getName());
 	}
 
 }
@@ -43,6 +43,7 @@ import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockFromToEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityDeathEvent;
 import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.event.entity.EntityTargetLivingEntityEvent;
 import org.bukkit.event.hanging.HangingBreakByEntityEvent;
@@ -139,12 +140,24 @@ public class PlayerListener implements Listener {
 		EntityOwnership entityOwnership = EntityOwnership.get(event.getEntity());
 		if (entityOwnership != null) {
 			entityOwnership.getArena().getEvents().onExplosion(event, event.blockList());
+			if (event.getEntityType() != EntityType.CREEPER) {
+				// TNT e palle di fuoco vengono rimosse dopo l'esplosione
+				entityOwnership.getArena().getEntityRegistry().remove(event.getEntity());
+			}
 		} else {
 			event.setCancelled(true);
 		}
 	}
 	
 	
+	@EventHandler (priority = EventPriority.MONITOR)
+	public void onOwnedEntityDeath(EntityDeathEvent event) {
+		if (event.getEntityType() != EntityType.PLAYER) {
+			EntityOwnership.remove(event.getEntity());
+		}
+	}
+	
+	
 	@EventHandler (priority = EventPriority.HIGH, ignoreCancelled = true)
 	public void onEntityTarget(EntityTargetLivingEntityEvent event) {
 		EntityOwnership entityOwnership = EntityOwnership.get(event.getEntity());
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.nms;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.bukkit.craftbukkit.v1_8_R3.entity.CraftPlayer;
+import org.bukkit.entity.Player;
+
+import net.minecraft.server.v1_8_R3.EnumParticle;
+import net.minecraft.server.v1_8_R3.PacketPlayOutWorldParticles;
+import net.minecraft.server.v1_8_R3.PlayerConnection;
+import wild.api.world.Particle;
+
+/**
+ * Pacchetto di particelle creato una volta sola, da inviare a più giocatori.
+ */
+public class ParticlePacket {
+	
+	private static final Map<Particle, EnumParticle> nmsParticles = new EnumMap<>(Particle.class);
+	
+	private final PacketPlayOutWorldParticles packet;
+	
+	
+	public ParticlePacket(Particle particle, double x, double y, double z, float offsetX, float offsetY, float offsetZ, float speed, int amount) {
+		packet = new PacketPlayOutWorldParticles(toNms(particle), false, (float) x, (float) y, (float) z, offsetX, offsetY, offsetZ, speed, amount);
+	}
+	
+	public void send(Player player) {
+		PlayerConnection connection = ((CraftPlayer) player).getHandle().playerConnection;
+		if (connection != null) {
+			connection.sendPacket(packet);
+		}
+	}
+	
+	private static EnumParticle toNms(Particle particle) {
+		return nmsParticles.computeIfAbsent(particle, ParticlePacket::findNms);
+	}
+	
+	private static EnumParticle findNms(Particle particle) {
+		switch (particle) {
+			case SMOKE:
+				return EnumParticle.SMOKE_NORMAL;
+			case HAPPY_VILLAGER:
+				return EnumParticle.VILLAGER_HAPPY;
+			default:
+				return EnumParticle.valueOf(particle.name());
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.profiler;
+
+import java.util.Arrays;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Istogramma dei tempi con finestra mobile di 10 minuti, diviso in intervalli da 10 secondi.
+ * I bucket sono logaritmici (4 per ogni potenza di 2, errore massimo del 25%) per non salvare ogni campione.
+ */
+public class RollingHistogram {
+	
+	private static final long SLOT_MILLIS = 10_000;
+	private static final int SLOTS = 60; // 10 minuti
+	
+	private static final int UNIT_SHIFT = 7; // Risoluzione di 128 ns
+	private static final int SUB_BUCKET_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = 128; // Oltre ~9 minuti finisce nell'ultimo bucket
+	
+	private final int[][] counts = new int[SLOTS][]; // Creati solo quando servono
+	private final long[] maxNanos = new long[SLOTS];
+	private final long[] slotEpochs = new long[SLOTS];
+	
+	
+	public RollingHistogram() {
+		Arrays.fill(slotEpochs, -1);
+	}
+	
+	public void record(long nanos, long nowMillis) {
+		long epoch = nowMillis / SLOT_MILLIS;
+		int slot = (int) (epoch % SLOTS);
+		
+		int[] slotCounts = counts[slot];
+		if (slotCounts == null) {
+			slotCounts = new int[BUCKETS];
+			counts[slot] = slotCounts;
+		}
+		if (slotEpochs[slot] != epoch) {
+			// Intervallo vecchio di 10 minuti, viene riutilizzato
+			Arrays.fill(slotCounts, 0);
+			maxNanos[slot] = 0;
+			slotEpochs[slot] = epoch;
+		}
+		
+		slotCounts[bucketIndex(nanos)]++;
+		if (nanos > maxNanos[slot]) {
+			maxNanos[slot] = nanos;
+		}
+	}
+	
+	/**
+	 * Unisce gli intervalli degli ultimi windowMillis (arrotondati a 10 secondi, compreso quello in corso).
+	 * 
+	 * @return null se non ci sono campioni
+	 */
+	public Summary summarize(long windowMillis, long nowMillis) {
+		long currentEpoch = nowMillis / SLOT_MILLIS;
+		long windowSlots = Math.min(Math.max(windowMillis / SLOT_MILLIS, 1), SLOTS);
+		
+		int[] merged = new int[BUCKETS];
+		long total = 0;
+		long max = 0;
+		
+		for (int slot = 0; slot < SLOTS; slot++) {
+			if (counts[slot] != null && slotEpochs[slot] > currentEpoch - windowSlots && slotEpochs[slot] <= currentEpoch) {
+				int[] slotCounts = counts[slot];
+				for (int bucket = 0; bucket < BUCKETS; bucket++) {
+					merged[bucket] += slotCounts[bucket];
+					total += slotCounts[bucket];
+				}
+				max = Math.max(max, maxNanos[slot]);
+			}
+		}
+		
+		if (total == 0) {
+			return null;
+		}
+		
+		return new Summary(total, percentile(merged, total, max, 0.50), percentile(merged, total, max, 0.95), percentile(merged, total, max, 0.99), max);
+	}
+	
+	private static long percentile(int[] merged, long total, long max, double percentile) {
+		long rank = (long) Math.ceil(total * percentile);
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += merged[bucket];
+			if (seen >= rank) {
+				// Limite superiore del bucket, ma mai più del massimo reale
+				return Math.min(bucketUpperBound(bucket), max);
+			}
+		}
+		return max;
+	}
+	
+	private static int bucketIndex(long nanos) {
+		long units = nanos >>> UNIT_SHIFT;
+		if (units < SUB_BUCKETS) {
+			return (int) units;
+		}
+		
+		int highestBit = 63 - Long.numberOfLeadingZeros(units);
+		int shift = highestBit - SUB_BUCKET_BITS;
+		int index = (shift + 1) * SUB_BUCKETS + (int) ((units >>> shift) & (SUB_BUCKETS - 1));
+		return Math.min(index, BUCKETS - 1);
+	}
+	
+	private static long bucketUpperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return (long) (bucket + 1) << UNIT_SHIFT;
+		}
+		
+		int shift = bucket / SUB_BUCKETS - 1;
+		int subBucket = bucket % SUB_BUCKETS;
+		return (long) (SUB_BUCKETS + subBucket + 1) << shift << UNIT_SHIFT;
+	}
+	
+	
+	@AllArgsConstructor
+	@Getter
+	public static class Summary {
+		
+		private final long samples;
+		private final long p50Nanos;
+		private final long p95Nanos;
+		private final long p99Nanos;
+		private final long maxNanos;
+		
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.profiler;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.ChatColor;
+
+/**
+ * Misura il tempo speso in ogni sezione del tick. Le sezioni eseguite più volte nello stesso tick
+ * (per esempio uno spawner per ogni team) vengono sommate e registrate come un solo campione con flush().
+ */
+public class TickProfiler {
+	
+	private static final long SHORT_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+	private static final long LONG_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(10);
+	
+	private static final TickSection[] SECTIONS = TickSection.values();
+	
+	private final TickSection totalSection;
+	private final RollingHistogram[] histograms = new RollingHistogram[SECTIONS.length]; // Creati solo per le sezioni usate
+	private final long[] pendingNanos = new long[SECTIONS.length];
+	private final boolean[] pendingSections = new boolean[SECTIONS.length];
+	private boolean hasPending;
+	
+	
+	/**
+	 * @param totalSection la sezione in cui registrare la somma delle altre a ogni flush
+	 */
+	public TickProfiler(TickSection totalSection) {
+		this.totalSection = totalSection;
+	}
+	
+	/**
+	 * Aggiunge il tempo trascorso da startNanos (System.nanoTime()) alla sezione.
+	 * 
+	 * @return il tempo attuale, da usare come inizio della sezione successiva
+	 */
+	public long add(TickSection section, long startNanos) {
+		long now = System.nanoTime();
+		int index = section.ordinal();
+		pendingNanos[index] += now - startNanos;
+		pendingSections[index] = true;
+		hasPending = true;
+		return now;
+	}
+	
+	/**
+	 * Registra nell'istogramma le sezioni eseguite dall'ultimo flush, da chiamare una volta per tick
+	 */
+	public void flush(long nowMillis) {
+		if (!hasPending) {
+			return;
+		}
+		
+		long totalNanos = 0;
+		for (int index = 0; index < SECTIONS.length; index++) {
+			if (pendingSections[index]) {
+				getHistogram(index).record(pendingNanos[index], nowMillis);
+				totalNanos += pendingNanos[index];
+				pendingNanos[index] = 0;
+				pendingSections[index] = false;
+			}
+		}
+		
+		if (totalSection != null) {
+			getHistogram(totalSection.ordinal()).record(totalNanos, nowMillis);
+		}
+		hasPending = false;
+	}
+	
+	private RollingHistogram getHistogram(int index) {
+		RollingHistogram histogram = histograms[index];
+		if (histogram == null) {
+			histogram = new RollingHistogram();
+			histograms[index] = histogram;
+		}
+		return histogram;
+	}
+	
+	public RollingHistogram.Summary summarize(TickSection section, boolean longWindow, long nowMillis) {
+		RollingHistogram histogram = histograms[section.ordinal()];
+		return histogram != null ? histogram.summarize(longWindow ? LONG_WINDOW_MILLIS : SHORT_WINDOW_MILLIS, nowMillis) : null;
+	}
+	
+	/**
+	 * Aggiunge alle righe i percentili di ogni sezione, per l'ultimo minuto e gli ultimi 10 minuti
+	 */
+	public void appendReport(List<String> lines, long nowMillis) {
+		boolean empty = true;
+		
+		for (TickSection section : SECTIONS) {
+			RollingHistogram.Summary shortSummary = summarize(section, false, nowMillis);
+			RollingHistogram.Summary longSummary = summarize(section, true, nowMillis);
+			
+			if (longSummary != null) {
+				empty = false;
+				lines.add(ChatColor.YELLOW + section.getDisplayName() + ":");
+				lines.add(ChatColor.GRAY + "  1 min:  " + formatSummary(shortSummary));
+				lines.add(ChatColor.GRAY + "  10 min: " + formatSummary(longSummary));
+			}
+		}
+		
+		if (empty) {
+			lines.add(ChatColor.GRAY + "Nessun dato negli ultimi 10 minuti.");
+		}
+	}
+	
+	public static String formatSummary(RollingHistogram.Summary summary) {
+		if (summary == null) {
+			return "nessun campione";
+		}
+		
+		return "p50 " + formatMillis(summary.getP50Nanos()) +
+			", p95 " + formatMillis(summary.getP95Nanos()) +
+			", p99 " + formatMillis(summary.getP99Nanos()) +
+			", max " + formatMillis(summary.getMaxNanos()) +
+			" (" + summary.getSamples() + " tick)";
+	}
+	
+	private static String formatMillis(long nanos) {
+		return String.format("%.3fms", nanos / 1_000_000.0);
+	}
+
+}
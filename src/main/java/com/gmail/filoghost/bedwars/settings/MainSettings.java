@@ -49,8 +49,35 @@ public class MainSettings extends YamlerConfig {
 	public static String mysql_user = "root";
 	public static String mysql_pass = "toor";
 	public static int mysql_port = 3306;
+	public static int mysql_batchSize = 100;
+	public static int mysql_poolSize = 4;
+	public static int mysql_executorThreads = 2;
+	public static int mysql_borrowTimeoutMillis = 5000;
+	public static int mysql_validateAfterIdleSeconds = 60;
+	
+	public static int stats_queueSize = 10000;
+	public static int stats_flushSeconds = 30;
+	public static int stats_flushUnsavedPlayers = 50;
+	public static int stats_loginWaitMillis = 3000;
+	public static int stats_shutdownWaitMillis = 10000;
 	
 	public static int arenaPadding = 0;
+	
+	public static int reset_maxMillisPerTick = 5;
+	
+	public static boolean spawners_mergeDrops = true;
+	
+	public static int particles_maxPerTick = 5000;
+	
+	public static int tick_parallelMinArenas = 4;
+	public static int tick_budgetMillis = 10;
+	
+	public static boolean load_governorEnabled = true;
+	public static int load_reduceHologramsMspt = 55;
+	public static int load_dropParticlesMspt = 65;
+	public static int load_slowSpectatorCheckMspt = 80;
+	public static int load_recoveryMarginMspt = 5;
+	public static int load_recoverySeconds = 10;
 
 	public static String chatFormat_spectators = "&7[Spettatori] &f{player} &8» &7";
 	public static String chatFormat_team = "{teamcolor}[Team] &f{player} &8» &7";
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.timer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import com.gmail.filoghost.bedwars.Bedwars;
+import com.gmail.filoghost.bedwars.arena.Arena;
+import com.gmail.filoghost.bedwars.arena.region.ArenaTemplate;
+import com.gmail.filoghost.bedwars.arena.region.Region;
+import com.gmail.filoghost.bedwars.arena.region.RegionSnapshot;
+import com.gmail.filoghost.bedwars.arena.region.TemplateDiff;
+import com.gmail.filoghost.bedwars.settings.MainSettings;
+import com.gmail.filoghost.bedwars.utils.Utils;
+
+/**
+ * Ripristina l'arena un pezzo alla volta, senza superare il tempo massimo per tick.
+ */
+public class ArenaResetTimer extends BukkitRunnable {
+	
+	private final Arena arena;
+	private final World world;
+	private final int minChunkX, minChunkZ, chunksX, chunksAmount;
+	private int chunkCursor;
+	private boolean blocksRestored;
+	
+	// Confronto con il template: copia dei chunk, calcolo asincrono, poi scrittura a gruppi
+	private final ArenaTemplate template;
+	private RegionSnapshot snapshot;
+	private boolean diffRequested;
+	private volatile TemplateDiff templateDiff;
+	private volatile boolean diffFailed;
+	private volatile Throwable diffError; // Segnalato dal thread principale
+	
+	public ArenaResetTimer(Arena arena) {
+		this.arena = arena;
+		
+		Region region = arena.getRegion();
+		this.world = region.getWorld();
+		this.minChunkX = region.getMinX() >> 4;
+		this.minChunkZ = region.getMinZ() >> 4;
+		this.chunksX = (region.getMaxX() >> 4) - minChunkX + 1;
+		this.chunksAmount = chunksX * ((region.getMaxZ() >> 4) - minChunkZ + 1);
+		this.template = arena.getTemplate();
+		if (template != null) {
+			this.snapshot = new RegionSnapshot(region);
+		}
+	}
+	
+	public ArenaResetTimer start() {
+		this.runTaskTimer(Bedwars.get(), 1, 1);
+		return this;
+	}
+	
+	@Override
+	public void run() {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(MainSettings.reset_maxMillisPerTick, 1));
+		
+		// Prima i blocchi piazzati e quelli sostituiti
+		if (!blocksRestored) {
+			if (!arena.getEvents().getPlacedBlocksRegistry().restoreStep(deadline)) {
+				return;
+			}
+			blocksRestored = true;
+		}
+		
+		if (diffError != null) {
+			Utils.reportAnomaly("could not compute template diff", arena, diffError);
+			diffError.printStackTrace();
+			diffError = null;
+		}
+		
+		// Poi tutto ciò che è cambiato per altre vie (esplosioni, liquidi, modifiche manuali)
+		if (template != null && !diffFailed && !restoreTemplateStep(deadline)) {
+			return;
+		}
+		
+		// Poi casse ed entità, un chunk alla volta
+		while (chunkCursor < chunksAmount) {
+			if (System.nanoTime() >= deadline) {
+				return;
+			}
+			
+			int chunkX = minChunkX + chunkCursor % chunksX;
+			int chunkZ = minChunkZ + chunkCursor / chunksX;
+			arena.resetChunk(world.getChunkAt(chunkX, chunkZ)); // Questo carica il chunk
+			chunkCursor++;
+		}
+		
+		cancel();
+		arena.finishReset();
+	}
+	
+	/**
+	 * @return true se i blocchi sono stati riportati allo stato del template
+	 */
+	private boolean restoreTemplateStep(long deadline) {
+		if (!diffRequested) {
+			if (!snapshot.captureStep(deadline)) {
+				return false;
+			}
+			
+			// Il confronto su tutta la regione non deve mai pesare sul thread principale
+			diffRequested = true;
+			RegionSnapshot capturedSnapshot = snapshot;
+			snapshot = null;
+			Bukkit.getScheduler().runTaskAsynchronously(Bedwars.get(), () -> {
+				try {
+					templateDiff = TemplateDiff.compute(template, capturedSnapshot);
+				} catch (Throwable t) {
+					diffError = t;
+					diffFailed = true;
+				}
+			});
+			return false;
+		}
+		
+		TemplateDiff diff = templateDiff;
+		if (diff == null) {
+			return false; // Calcolo ancora in corso
+		}
+		
+		return diff.applyStep(world, deadline);
+	}
+
+}
@@ -28,29 +28,38 @@
  */
 package com.gmail.filoghost.bedwars.timer;
 
-import org.bukkit.scheduler.BukkitRunnable;
-
 import com.gmail.filoghost.bedwars.Bedwars;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 
-@AllArgsConstructor
-public class CountdownTimer extends BukkitRunnable {
+public class CountdownTimer {
 	
 	@Getter private int countdown;
 	private LoopHandler tickHandler;
 	private FinishHandler finishHandler;
+	private TimingWheel.Task task;
+	private boolean cancelled;
+	
+	public CountdownTimer(int countdown, LoopHandler tickHandler, FinishHandler finishHandler) {
+		this.countdown = countdown;
+		this.tickHandler = tickHandler;
+		this.finishHandler = finishHandler;
+	}
 	
 	public CountdownTimer start() {
-		this.runTaskTimer(Bedwars.get(), 0, 20);
+		task = Bedwars.getTickTimer().getTimingWheel().schedule(1, this::run);
 		return this;
 	}
 	
-	@Override
-	public void run() {
+	public void cancel() {
+		cancelled = true;
+		if (task != null) {
+			task.cancel();
+		}
+	}
+	
+	private void run() {
 		if (countdown <= 0) {
-			cancel();
 			finishHandler.onFinish();
 			return;
 		}
@@ -60,6 +69,10 @@ public class CountdownTimer extends BukkitRunnable {
 		} finally {
 			countdown--;
 		}
+		
+		if (!cancelled) {
+			task = Bedwars.getTickTimer().getTimingWheel().schedule(20, this::run);
+		}
 	}
 
 }
@@ -28,27 +28,16 @@
  */
 package com.gmail.filoghost.bedwars.timer;
 
-import java.sql.SQLException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 
-import org.bukkit.scheduler.BukkitRunnable;
-
-import com.gmail.filoghost.bedwars.Bedwars;
-import com.gmail.filoghost.bedwars.database.SQLManager;
-
-public class MySQLKeepAliveTimer extends BukkitRunnable {
+@AllArgsConstructor
+public enum DeferrableWork {
 	
-	public MySQLKeepAliveTimer start() {
-		this.runTaskTimer(Bedwars.get(), 10 * 60 * 20, 10 * 60 * 20);
-		return this;
-	}
+	SPAWN_EFFECTS	("Effetti vicino al letto"),
+	PARTICLES		("Particelle"),
+	MAINTENANCE		("Pulizia drop ed entità");
 	
-	@Override
-	public void run() {
-		try {
-			SQLManager.checkConnection();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-	}
+	@Getter private final String displayName;
 
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.timer;
+
+import java.util.List;
+
+import org.bukkit.ChatColor;
+
+import com.gmail.filoghost.bedwars.settings.MainSettings;
+
+import lombok.Getter;
+import wild.api.util.UnitFormatter;
+
+/**
+ * Misura la durata dei tick del server e riduce il lavoro estetico quando è sotto pressione.
+ * La durata è l'intervallo tra l'inizio di due tick consecutivi del TickTimer: a 20 TPS è 50ms, oltre il server è in ritardo.
+ * Si sale e si scende di un livello alla volta, e per scendere serve un MSPT più basso della soglia per diversi secondi (isteresi).
+ */
+public class LoadGovernor {
+	
+	private static final int SAMPLE_TICKS = 20;
+	private static final int RAISE_SAMPLES = 2; // Evita di reagire a un singolo picco
+	
+	@Getter private LoadLevel level = LoadLevel.NORMAL;
+	@Getter private double averageMspt;
+	@Getter private long levelChangedMillis = System.currentTimeMillis();
+	
+	private long lastTickNanos;
+	private long sampleNanos;
+	private int sampleTicks;
+	
+	private int overloadedSamples;
+	private int recoveredSamples;
+	
+	
+	public void onTickStart(long tickStartNanos) {
+		if (lastTickNanos != 0) {
+			sampleNanos += tickStartNanos - lastTickNanos;
+			sampleTicks++;
+		}
+		lastTickNanos = tickStartNanos;
+		
+		if (sampleTicks >= SAMPLE_TICKS) {
+			averageMspt = sampleNanos / (double) sampleTicks / 1_000_000.0;
+			sampleNanos = 0;
+			sampleTicks = 0;
+			evaluate();
+		}
+	}
+	
+	private void evaluate() {
+		if (!MainSettings.load_governorEnabled) {
+			setLevel(LoadLevel.NORMAL);
+			return;
+		}
+		
+		LoadLevel nextLevel = level.next();
+		if (nextLevel != null && averageMspt > nextLevel.getEnterMspt()) {
+			recoveredSamples = 0;
+			if (++overloadedSamples >= RAISE_SAMPLES) {
+				setLevel(nextLevel);
+			}
+			return;
+		}
+		overloadedSamples = 0;
+		
+		if (level != LoadLevel.NORMAL && averageMspt < level.getEnterMspt() - MainSettings.load_recoveryMarginMspt) {
+			if (++recoveredSamples >= MainSettings.load_recoverySeconds) {
+				setLevel(level.previous());
+			}
+		} else {
+			recoveredSamples = 0;
+		}
+	}
+	
+	private void setLevel(LoadLevel newLevel) {
+		overloadedSamples = 0;
+		recoveredSamples = 0;
+		if (level != newLevel) {
+			level = newLevel;
+			levelChangedMillis = System.currentTimeMillis();
+		}
+	}
+	
+	/**
+	 * @return ogni quanti simboli vengono aggiornate le barre degli ologrammi
+	 */
+	public int getHologramStep() {
+		return level.includes(LoadLevel.REDUCED_HOLOGRAMS) ? 2 : 1;
+	}
+	
+	public boolean isSignRefreshDelayed() {
+		return level.includes(LoadLevel.REDUCED_HOLOGRAMS);
+	}
+	
+	public boolean isParticlesDisabled() {
+		return level.includes(LoadLevel.NO_PARTICLES);
+	}
+	
+	public boolean isSpectatorCheckSlowed() {
+		return level.includes(LoadLevel.SLOW_SPECTATOR_CHECK);
+	}
+	
+	public void appendReport(List<String> lines) {
+		lines.add(ChatColor.YELLOW + "Livello di carico: " + ChatColor.WHITE + level.getDisplayName() + (MainSettings.load_governorEnabled ? "" : ChatColor.RED + " (disattivato)"));
+		lines.add(ChatColor.GRAY + "  MSPT medio: " + String.format("%.1f", averageMspt) + ", da " + UnitFormatter.formatMinutesOrSeconds((int) ((System.currentTimeMillis() - levelChangedMillis) / 1000)));
+		for (LoadLevel otherLevel : LoadLevel.values()) {
+			if (otherLevel != LoadLevel.NORMAL) {
+				lines.add((level.includes(otherLevel) ? ChatColor.GREEN : ChatColor.DARK_GRAY) + "  " + otherLevel.getDisplayName() + " (oltre " + otherLevel.getEnterMspt() + " MSPT)");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.timer;
+
+import com.gmail.filoghost.bedwars.settings.MainSettings;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Livelli di alleggerimento, ognuno comprende anche quelli precedenti.
+ */
+@AllArgsConstructor
+public enum LoadLevel {
+	
+	NORMAL					("Normale"),
+	REDUCED_HOLOGRAMS		("Ologrammi e cartelli rallentati"),
+	NO_PARTICLES			("Particelle disattivate"),
+	SLOW_SPECTATOR_CHECK	("Controllo spettatori rallentato");
+	
+	private static final LoadLevel[] LEVELS = values();
+	
+	@Getter private final String displayName;
+	
+	
+	/**
+	 * MSPT medio oltre il quale si passa a questo livello
+	 */
+	public int getEnterMspt() {
+		switch (this) {
+			case REDUCED_HOLOGRAMS:
+				return MainSettings.load_reduceHologramsMspt;
+			case NO_PARTICLES:
+				return MainSettings.load_dropParticlesMspt;
+			case SLOW_SPECTATOR_CHECK:
+				return MainSettings.load_slowSpectatorCheckMspt;
+			default:
+				return 0;
+		}
+	}
+	
+	public boolean includes(LoadLevel other) {
+		return ordinal() >= other.ordinal();
+	}
+	
+	public LoadLevel next() {
+		return ordinal() + 1 < LEVELS.length ? LEVELS[ordinal() + 1] : null;
+	}
+	
+	public LoadLevel previous() {
+		return ordinal() > 0 ? LEVELS[ordinal() - 1] : null;
+	}
+
+}
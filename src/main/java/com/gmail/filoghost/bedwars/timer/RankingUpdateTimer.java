@@ -28,11 +28,9 @@
  */
 package com.gmail.filoghost.bedwars.timer;
 
-import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
 
-import org.bukkit.Bukkit;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.Sign;
@@ -50,23 +48,15 @@ public class RankingUpdateTimer extends BukkitRunnable {
 	
 	
 	public RankingUpdateTimer start() {
-		this.runTaskTimerAsynchronously(Bedwars.get(), 0L, 60 * 20L);
+		this.runTaskTimer(Bedwars.get(), 0L, 60 * 20L);
 		return this;
 	}
 	
 	@Override
 	public void run() {
-		try {
-			Ranking.loadRankings();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		
-		// Thread principale
-		Bukkit.getScheduler().runTask(Bedwars.get(), () -> {
-			updatePodium(Ranking.getTopWins(), PodiumSettings.wins_heads, PodiumSettings.wins_signs);
-			updatePodium(Ranking.getTopFinalKills(), PodiumSettings.finalKills_heads, PodiumSettings.finalKills_signs);
-		});
+		// Le classifiche sono in memoria, non serve interrogare il database
+		updatePodium(Ranking.getTopWins(), PodiumSettings.wins_heads, PodiumSettings.wins_signs);
+		updatePodium(Ranking.getTopFinalKills(), PodiumSettings.finalKills_heads, PodiumSettings.finalKills_signs);
 	}
 	
 	private void updatePodium(List<SQLSingleStat> topPlayers, Map<String, BlockConfig> topHeads, Map<String, BlockConfig> topSigns) {
@@ -30,38 +30,43 @@ package com.gmail.filoghost.bedwars.timer;
 
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
 
 import com.gmail.filoghost.bedwars.Bedwars;
 import com.gmail.filoghost.bedwars.arena.Arena;
 import com.gmail.filoghost.bedwars.arena.ArenaStatus;
 import com.gmail.filoghost.bedwars.arena.PlayerStatus;
 
-import lombok.AllArgsConstructor;
 import wild.api.WildCommons;
 import wild.api.WildConstants;
 
-@AllArgsConstructor
-public class RespawnTimer extends BukkitRunnable {
+public class RespawnTimer {
 	
 	private int countdown;
 	private Arena arena;
 	private Player player;
 	
+	public RespawnTimer(int countdown, Arena arena, Player player) {
+		this.countdown = countdown;
+		this.arena = arena;
+		this.player = player;
+	}
+	
 	public RespawnTimer start() {
-		this.runTaskTimer(Bedwars.get(), 20, 20);
+		schedule();
 		return this;
 	}
 	
-	@Override
-	public void run() {
+	private void schedule() {
+		Bedwars.getTickTimer().getTimingWheel().schedule(20, this::run);
+	}
+	
+	private void run() {
 		PlayerStatus playerStatus = arena.getPlayerStatus(player);
 		if (playerStatus == null || arena.getArenaStatus() != ArenaStatus.COMBAT) {
-			cancel();
+			return;
 		}
 		
 		if (countdown <= 0) {
-			cancel();
 			playerStatus.setSpectator(player, false);
 			arena.getTeleporterMenu().update();
 			arena.getEvents().onRespawn(player, false);
@@ -73,6 +78,7 @@ public class RespawnTimer extends BukkitRunnable {
 		WildConstants.Sounds.COUNTDOWN_TIMER.playTo(player);
 		WildCommons.sendTitle(player, 0, 30, 5, ChatColor.RED + "Sei morto!", ChatColor.YELLOW + "Respawn in: " + countdown);
 		countdown--;
+		schedule();
 	}
 
 }
@@ -42,6 +42,8 @@ public class SpectatorLocationCheckTimer extends BukkitRunnable {
 	
 	private static final int MAX_TOLERANCE = 50;
 	private static final int BOUNCE_BACK_DISTANCE = 10;
+	
+	private boolean skippedLastRun;
 
 	
 	public SpectatorLocationCheckTimer start() {
@@ -51,6 +53,13 @@ public class SpectatorLocationCheckTimer extends BukkitRunnable {
 	
 	@Override
 	public void run() {
+		// Sotto carico il controllo viene eseguito una volta sì e una no
+		if (Bedwars.getTickTimer().getLoadGovernor().isSpectatorCheckSlowed() && !skippedLastRun) {
+			skippedLastRun = true;
+			return;
+		}
+		skippedLastRun = false;
+		
 		for (Arena arena : Bedwars.getAllArenas()) {
 			int minX = 0, minZ = 0, maxX = 0, maxZ = 0;
 			boolean initializedBorders = false;
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.timer;
+
+import java.util.List;
+
+import org.bukkit.ChatColor;
+
+import com.gmail.filoghost.bedwars.settings.MainSettings;
+
+/**
+ * Tempo a disposizione del plugin in ogni tick. Il lavoro rimandabile (vedi DeferrableWork) controlla hasTime()
+ * e, se il tempo è finito, passa al tick successivo. Lo stesso lavoro non viene mai rimandato due volte di seguito.
+ */
+public class TickBudget {
+	
+	private static final DeferrableWork[] WORK_TYPES = DeferrableWork.values();
+	
+	private long deadlineNanos;
+	
+	// Metriche dall'avvio
+	private final long[] deferredUnits = new long[WORK_TYPES.length];
+	private final long[] deferrals = new long[WORK_TYPES.length];
+	private long ticks;
+	private long ticksWithDeferrals;
+	private boolean deferredThisTick;
+	
+	
+	public void startTick(long tickStartNanos) {
+		deadlineNanos = tickStartNanos + MainSettings.tick_budgetMillis * 1_000_000L;
+		ticks++;
+		deferredThisTick = false;
+	}
+	
+	public boolean hasTime() {
+		return System.nanoTime() < deadlineNanos;
+	}
+	
+	/**
+	 * @param units quantità di lavoro rimandato (azioni, particelle, ecc.)
+	 */
+	public void recordDeferred(DeferrableWork work, int units) {
+		deferredUnits[work.ordinal()] += units;
+		deferrals[work.ordinal()]++;
+		if (!deferredThisTick) {
+			deferredThisTick = true;
+			ticksWithDeferrals++;
+		}
+	}
+	
+	public void appendReport(List<String> lines) {
+		lines.add(ChatColor.YELLOW + "Lavoro rimandato (limite " + MainSettings.tick_budgetMillis + "ms per tick):");
+		lines.add(ChatColor.GRAY + "  Tick con lavoro rimandato: " + ticksWithDeferrals + " su " + ticks);
+		for (DeferrableWork work : WORK_TYPES) {
+			lines.add(ChatColor.GRAY + "  " + work.getDisplayName() + ": " + deferrals[work.ordinal()] + " volte, " + deferredUnits[work.ordinal()] + " unità");
+		}
+	}
+
+}
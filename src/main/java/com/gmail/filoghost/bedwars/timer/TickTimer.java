@@ -28,28 +28,111 @@
  */
 package com.gmail.filoghost.bedwars.timer;
 
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 import org.bukkit.scheduler.BukkitRunnable;
 
 import com.gmail.filoghost.bedwars.Bedwars;
 import com.gmail.filoghost.bedwars.arena.Arena;
+import com.gmail.filoghost.bedwars.arena.ArenaTickPlan;
+import com.gmail.filoghost.bedwars.arena.particles.ParticleDispatcher;
+import com.gmail.filoghost.bedwars.profiler.TickProfiler;
+import com.gmail.filoghost.bedwars.profiler.TickSection;
+import com.gmail.filoghost.bedwars.utils.ResourceLocator;
+import com.google.common.collect.Lists;
 
 import lombok.Getter;
 
 public class TickTimer extends BukkitRunnable {
 	
 	@Getter private int ticks;
+	@Getter private final TimingWheel timingWheel = new TimingWheel(); // Condiviso da tutte le arene, avanza insieme a ticks
+	@Getter private final TickProfiler profiler = new TickProfiler(TickSection.SERVER_TOTAL);
+	
+	private final ForkJoinPool computePool = new ForkJoinPool(Math.max(Runtime.getRuntime().availableProcessors() - 1, 1)); // Un core resta al thread principale
+	private final List<ArenaTickPlan> activePlans = Lists.newArrayList();
+	
+	@Getter private final TickBudget budget = new TickBudget();
+	@Getter private final LoadGovernor loadGovernor = new LoadGovernor();
+	private boolean particlesDeferred;
+	private boolean maintenanceDue;
+	private boolean maintenanceDeferred;
 	
 	public TickTimer start() {
 		this.runTaskTimer(Bedwars.get(), 0, 1);
 		return this;
 	}
 	
+	public void shutdown() {
+		cancel();
+		computePool.shutdown();
+	}
+	
 	@Override
 	public void run() {
 		ticks++;
+		long sectionStart = System.nanoTime();
+		budget.startTick(sectionStart);
+		loadGovernor.onTickStart(sectionStart);
+		timingWheel.advance();
+		sectionStart = profiler.add(TickSection.TIMING_WHEEL, sectionStart);
+		
+		// Copia i dati delle arene, calcola le azioni (in parallelo se ci sono molte arene) e infine le esegue
+		for (Arena arena : Bedwars.getArenasByName().values()) {
+			if (arena.getTickPlan().snapshot(ticks)) {
+				activePlans.add(arena.getTickPlan());
+			}
+		}
+		ArenaTickPlan.computeAll(activePlans, computePool);
+		activePlans.clear();
+		
 		for (Arena arena : Bedwars.getArenasByName().values()) {
 			arena.onTick(ticks);
 		}
+		sectionStart = profiler.add(TickSection.ARENAS, sectionStart);
+		
+		// Il lavoro rimandabile viene spostato al tick successivo se il tempo è finito, ma al massimo una volta
+		if (budget.hasTime() || particlesDeferred) {
+			ParticleDispatcher.flush(Bedwars.getArenasByName().values());
+			particlesDeferred = false;
+		} else {
+			int pendingEmissions = 0;
+			for (Arena arena : Bedwars.getArenasByName().values()) {
+				pendingEmissions += arena.getParticles().getSize();
+			}
+			if (pendingEmissions > 0) {
+				particlesDeferred = true;
+				budget.recordDeferred(DeferrableWork.PARTICLES, pendingEmissions);
+			}
+		}
+		sectionStart = profiler.add(TickSection.PARTICLES, sectionStart);
+		
+		if (ticks % 20 == 0) {
+			maintenanceDue = true;
+		}
+		if (maintenanceDue) {
+			if (budget.hasTime() || maintenanceDeferred) {
+				ResourceLocator.purgeInvalidDrops();
+				for (Arena arena : Bedwars.getArenasByName().values()) {
+					arena.getEntityRegistry().purgeDead();
+					arena.refreshPendingSign();
+				}
+				maintenanceDue = false;
+				maintenanceDeferred = false;
+				profiler.add(TickSection.MAINTENANCE, sectionStart);
+			} else {
+				maintenanceDeferred = true;
+				budget.recordDeferred(DeferrableWork.MAINTENANCE, 1);
+			}
+		}
+		
+		// Le sezioni delle arene comprendono anche gli spawner e i sondaggi eseguiti dal TimingWheel
+		long nowMillis = System.currentTimeMillis();
+		for (Arena arena : Bedwars.getArenasByName().values()) {
+			arena.getProfiler().flush(nowMillis);
+		}
+		profiler.flush(nowMillis);
 	}
 
 }
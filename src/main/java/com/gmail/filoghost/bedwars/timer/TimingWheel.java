@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.timer;
+
+import lombok.Getter;
+
+/**
+ * Timing wheel gerarchico: ogni livello ha 64 slot, ognuno largo quanto un giro del livello inferiore.
+ * Ad ogni tick vengono esaminati solo i task in scadenza, più un travaso dai livelli superiori ogni 64 tick.
+ * Da usare solo nel thread principale.
+ */
+public class TimingWheel {
+	
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final int LEVELS = 4;
+	private static final int MAX_DELAY = (1 << (SLOT_BITS * LEVELS)) - 1; // Circa 9 giorni, oltre viene reinserito
+	
+	private final Task[][] slots; // Nodi sentinella di liste circolari
+	@Getter private int currentTick;
+	@Getter private int pendingTasks;
+	
+	
+	public TimingWheel() {
+		slots = new Task[LEVELS][SLOTS];
+		for (int level = 0; level < LEVELS; level++) {
+			for (int slot = 0; slot < SLOTS; slot++) {
+				Task sentinel = new Task(null);
+				sentinel.prev = sentinel;
+				sentinel.next = sentinel;
+				slots[level][slot] = sentinel;
+			}
+		}
+	}
+	
+	
+	/**
+	 * @param delayTicks dopo quanti tick eseguire il task, minimo 1 (il tick successivo)
+	 */
+	public Task schedule(int delayTicks, Runnable action) {
+		Task task = new Task(action);
+		task.dueTick = currentTick + Math.max(delayTicks, 1);
+		insert(task);
+		pendingTasks++;
+		return task;
+	}
+	
+	
+	/**
+	 * Avanza di un tick ed esegue i task in scadenza.
+	 */
+	public void advance() {
+		currentTick++;
+		
+		// A ogni giro completo di un livello, distribuisce lo slot corrente del livello superiore
+		for (int level = 1; level < LEVELS; level++) {
+			int shift = level * SLOT_BITS;
+			if ((currentTick & ((1 << shift) - 1)) != 0) {
+				break;
+			}
+			cascade(slots[level][(currentTick >>> shift) & SLOT_MASK]);
+		}
+		
+		Task sentinel = slots[0][currentTick & SLOT_MASK];
+		while (sentinel.next != sentinel) {
+			Task task = sentinel.next;
+			unlink(task);
+			
+			if (task.dueTick - currentTick > 0) {
+				// Oltre il ritardo massimo, non ancora scaduto
+				insert(task);
+				continue;
+			}
+			
+			pendingTasks--;
+			try {
+				task.action.run();
+			} catch (Throwable t) {
+				t.printStackTrace();
+			}
+		}
+	}
+	
+	
+	private void cascade(Task sentinel) {
+		while (sentinel.next != sentinel) {
+			Task task = sentinel.next;
+			unlink(task);
+			insert(task);
+		}
+	}
+	
+	
+	private void insert(Task task) {
+		int delay = task.dueTick - currentTick;
+		int dueTick = delay > MAX_DELAY ? currentTick + MAX_DELAY : task.dueTick;
+		if (delay > MAX_DELAY) {
+			delay = MAX_DELAY;
+		}
+		
+		int level = 0;
+		while (level < LEVELS - 1 && delay >= 1 << ((level + 1) * SLOT_BITS)) {
+			level++;
+		}
+		
+		Task sentinel = slots[level][(dueTick >>> (level * SLOT_BITS)) & SLOT_MASK];
+		task.prev = sentinel.prev;
+		task.next = sentinel;
+		sentinel.prev.next = task;
+		sentinel.prev = task;
+		task.wheel = this;
+	}
+	
+	
+	private void unlink(Task task) {
+		task.prev.next = task.next;
+		task.next.prev = task.prev;
+		task.prev = null;
+		task.next = null;
+		task.wheel = null;
+	}
+	
+	
+	public static class Task {
+		
+		private final Runnable action;
+		private int dueTick;
+		private Task prev, next;
+		private TimingWheel wheel; // Null se non è in attesa
+		
+		private Task(Runnable action) {
+			this.action = action;
+		}
+		
+		public boolean isPending() {
+			return wheel != null;
+		}
+		
+		public void cancel() {
+			if (wheel != null) {
+				TimingWheel owner = wheel;
+				owner.unlink(this);
+				owner.pendingTasks--;
+			}
+		}
+		
+	}
+
+}
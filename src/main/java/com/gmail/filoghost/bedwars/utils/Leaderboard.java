@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.utils;
+
+import java.util.List;
+import java.util.Map;
+
+import com.gmail.filoghost.bedwars.database.SQLSingleStat;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Classifica di una statistica tenuta in memoria: caricata una volta dal database all'avvio e poi aggiornata
+ * a ogni modifica, così la top e la posizione di un giocatore non richiedono query.
+ * I giocatori con valore zero non compaiono.
+ */
+public class Leaderboard {
+	
+	private final RankTree tree = new RankTree();
+	private final Map<String, RankTree.Node> nodesByPlayer = Maps.newHashMap();
+	
+	
+	/**
+	 * Imposta il valore attuale di un giocatore.
+	 */
+	public synchronized void set(String playerName, int value) {
+		RankTree.Node previous = nodesByPlayer.remove(playerName.toLowerCase());
+		if (previous != null) {
+			tree.remove(previous);
+		}
+		
+		if (value > 0) {
+			RankTree.Node node = new RankTree.Node(playerName, value);
+			tree.insert(node);
+			nodesByPlayer.put(node.key, node);
+		}
+	}
+	
+	/**
+	 * Come set(), ma non sovrascrive un valore già impostato: durante il caricamento iniziale quello in memoria è più recente.
+	 */
+	public synchronized void seed(String playerName, int value) {
+		if (!nodesByPlayer.containsKey(playerName.toLowerCase())) {
+			set(playerName, value);
+		}
+	}
+	
+	public synchronized List<SQLSingleStat> getTop(int amount) {
+		List<SQLSingleStat> top = Lists.newArrayListWithCapacity(Math.min(amount, tree.size()));
+		for (int i = 0; i < amount && i < tree.size(); i++) {
+			RankTree.Node node = tree.get(i);
+			top.add(new SQLSingleStat(node.playerName, node.value));
+		}
+		return top;
+	}
+	
+	/**
+	 * @return la posizione in classifica partendo da 1, o 0 se il giocatore non è in classifica
+	 */
+	public synchronized int getRank(String playerName) {
+		RankTree.Node node = nodesByPlayer.get(playerName.toLowerCase());
+		return node != null ? tree.indexOf(node) + 1 : 0;
+	}
+	
+	public synchronized int size() {
+		return tree.size();
+	}
+	
+	public synchronized void clear() {
+		tree.clear();
+		nodesByPlayer.clear();
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.utils;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Mappa con chiavi long primitive (senza boxing), a indirizzamento aperto.
+ * Le ricerche non allocano oggetti, può essere usata anche con chiavi int (id delle entità).
+ */
+public class LongObjectHashMap<V> {
+	
+	private static final float LOAD_FACTOR = 0.5f;
+	
+	private long[] keys;
+	private Object[] values; // Null indica uno slot vuoto
+	private int size;
+	private int mask;
+	
+	
+	public LongObjectHashMap() {
+		this(16);
+	}
+	
+	public LongObjectHashMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max((int) (expectedSize / LOAD_FACTOR), 2) - 1) << 1;
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+	
+	
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		for (int slot = hash(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return (V) values[slot];
+			}
+		}
+		return null;
+	}
+	
+	
+	/**
+	 * @return il valore precedente, o null se la chiave non era presente
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) {
+			throw new NullPointerException("value");
+		}
+		
+		int slot = hash(key) & mask;
+		for (; values[slot] != null; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				V previous = (V) values[slot];
+				values[slot] = value;
+				return previous;
+			}
+		}
+		
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size > keys.length * LOAD_FACTOR) {
+			resize();
+		}
+		return null;
+	}
+	
+	
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int slot = hash(key) & mask;
+		for (; values[slot] != null; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				break;
+			}
+		}
+		
+		Object removed = values[slot];
+		if (removed == null) {
+			return null;
+		}
+		
+		// Sposta indietro le voci successive che avevano collisioni, per non lasciare buchi nella sequenza
+		int gap = slot;
+		for (int next = (gap + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+			int ideal = hash(keys[next]) & mask;
+			if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = keys[next];
+				values[gap] = values[next];
+				gap = next;
+			}
+		}
+		values[gap] = null;
+		size--;
+		return (V) removed;
+	}
+	
+	
+	/**
+	 * Rimuove i valori che soddisfano la condizione. Alloca una copia delle voci, non usare nei percorsi frequenti.
+	 */
+	@SuppressWarnings("unchecked")
+	public void removeIf(Predicate<V> filter) {
+		long[] keysCopy = keys.clone();
+		Object[] valuesCopy = values.clone();
+		
+		for (int i = 0; i < valuesCopy.length; i++) {
+			if (valuesCopy[i] != null && filter.test((V) valuesCopy[i])) {
+				remove(keysCopy[i]);
+			}
+		}
+	}
+	
+	
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+	
+	
+	public int size() {
+		return size;
+	}
+	
+	
+	private void resize() {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		
+		keys = new long[oldKeys.length * 2];
+		values = new Object[oldValues.length * 2];
+		mask = keys.length - 1;
+		
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				int slot = hash(oldKeys[i]) & mask;
+				while (values[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+	
+	
+	private static int hash(long key) {
+		// Mescola i bit, le coordinate dei chunk sono spesso consecutive
+		key *= 0x9E3779B97F4A7C15L;
+		return (int) (key ^ (key >>> 32));
+	}
+
+}
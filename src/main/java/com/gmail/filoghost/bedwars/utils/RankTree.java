@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2020, Wild Adventure
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ * 4. Redistribution of this software in source or binary forms shall be free
+ *    of all charges or fees to the recipient of this software.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gmail.filoghost.bedwars.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Treap con la dimensione dei sottoalberi, per trovare la posizione di un elemento e l'elemento in una posizione
+ * in O(log n). L'ordine è per valore decrescente e, a parità di valore, per nome crescente.
+ * Non è thread-safe, la sincronizzazione spetta a Leaderboard.
+ */
+class RankTree {
+	
+	private Node root;
+	
+	
+	public void insert(Node node) {
+		root = insert(root, node);
+	}
+	
+	public void remove(Node node) {
+		root = remove(root, node);
+	}
+	
+	public int size() {
+		return size(root);
+	}
+	
+	public void clear() {
+		root = null;
+	}
+	
+	/**
+	 * @return quanti elementi vengono prima di node (0 = primo)
+	 */
+	public int indexOf(Node node) {
+		int index = 0;
+		Node current = root;
+		while (current != null) {
+			int comparison = compare(node, current);
+			if (comparison < 0) {
+				current = current.left;
+			} else if (comparison > 0) {
+				index += size(current.left) + 1;
+				current = current.right;
+			} else {
+				return index + size(current.left);
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return l'elemento in posizione index (0 = primo), o null se non esiste
+	 */
+	public Node get(int index) {
+		Node current = root;
+		while (current != null) {
+			int leftSize = size(current.left);
+			if (index < leftSize) {
+				current = current.left;
+			} else if (index > leftSize) {
+				index -= leftSize + 1;
+				current = current.right;
+			} else {
+				return current;
+			}
+		}
+		return null;
+	}
+	
+	private static Node insert(Node tree, Node node) {
+		if (tree == null) {
+			return node;
+		}
+		
+		if (compare(node, tree) < 0) {
+			tree.left = insert(tree.left, node);
+			if (tree.left.priority > tree.priority) {
+				tree = rotateRight(tree);
+			}
+		} else {
+			tree.right = insert(tree.right, node);
+			if (tree.right.priority > tree.priority) {
+				tree = rotateLeft(tree);
+			}
+		}
+		
+		updateSize(tree);
+		return tree;
+	}
+	
+	private static Node remove(Node tree, Node node) {
+		if (tree == null) {
+			return null;
+		}
+		
+		int comparison = compare(node, tree);
+		if (comparison < 0) {
+			tree.left = remove(tree.left, node);
+		} else if (comparison > 0) {
+			tree.right = remove(tree.right, node);
+		} else {
+			return merge(tree.left, tree.right);
+		}
+		
+		updateSize(tree);
+		return tree;
+	}
+	
+	private static Node merge(Node left, Node right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+		
+		if (left.priority > right.priority) {
+			left.right = merge(left.right, right);
+			updateSize(left);
+			return left;
+		} else {
+			right.left = merge(left, right.left);
+			updateSize(right);
+			return right;
+		}
+	}
+	
+	private static Node rotateRight(Node tree) {
+		Node newRoot = tree.left;
+		tree.left = newRoot.right;
+		newRoot.right = tree;
+		updateSize(tree);
+		updateSize(newRoot);
+		return newRoot;
+	}
+	
+	private static Node rotateLeft(Node tree) {
+		Node newRoot = tree.right;
+		tree.right = newRoot.left;
+		newRoot.left = tree;
+		updateSize(tree);
+		updateSize(newRoot);
+		return newRoot;
+	}
+	
+	private static void updateSize(Node node) {
+		node.size = size(node.left) + size(node.right) + 1;
+	}
+	
+	private static int size(Node node) {
+		return node != null ? node.size : 0;
+	}
+	
+	private static int compare(Node a, Node b) {
+		if (a.value != b.value) {
+			return a.value > b.value ? -1 : 1;
+		}
+		return a.key.compareTo(b.key);
+	}
+	
+	
+	static class Node {
+		
+		final String playerName;
+		final String key;
+		final int value;
+		
+		private final int priority = ThreadLocalRandom.current().nextInt();
+		private Node left, right;
+		private int size = 1;
+		
+		Node(String playerName, int value) {
+			this.playerName = playerName;
+			this.key = playerName.toLowerCase();
+			this.value = value;
+		}
+		
+	}
+
+}
@@ -31,7 +31,6 @@ package com.gmail.filoghost.bedwars.utils;
 import java.sql.SQLException;
 import java.util.List;
 
-import com.gmail.filoghost.bedwars.database.SQLColumns;
 import com.gmail.filoghost.bedwars.database.SQLManager;
 import com.gmail.filoghost.bedwars.database.SQLSingleStat;
 
@@ -39,12 +38,35 @@ import lombok.Getter;
 
 public class Ranking {
 	
-	@Getter private static List<SQLSingleStat> topWins;
-	@Getter private static List<SQLSingleStat> topFinalKills;
+	private static final int TOP_SIZE = 15;
+	
+	@Getter private static final Leaderboard wins = new Leaderboard();
+	@Getter private static final Leaderboard finalKills = new Leaderboard();
+	@Getter private static volatile boolean loaded; // Finché è false le classifiche contengono solo i giocatori entrati dall'avvio
 
+	/**
+	 * Da chiamare all'avvio, in un thread asincrono. Le modifiche arrivate nel frattempo hanno la precedenza,
+	 * quindi si può richiamare se il caricamento precedente si è interrotto.
+	 */
 	public static void loadRankings() throws SQLException {
-		topWins = SQLManager.getTop(SQLColumns.PLAYERS_WINS, 15);
-		topFinalKills = SQLManager.getTop(SQLColumns.PLAYERS_FINAL_KILLS, 15);
+		SQLManager.forEachPlayerStats((playerName, playerWins, playerFinalKills) -> {
+			wins.seed(playerName, playerWins);
+			finalKills.seed(playerName, playerFinalKills);
+		});
+		loaded = true;
+	}
+	
+	public static List<SQLSingleStat> getTopWins() {
+		return wins.getTop(TOP_SIZE);
+	}
+	
+	public static List<SQLSingleStat> getTopFinalKills() {
+		return finalKills.getTop(TOP_SIZE);
+	}
+	
+	public static void clear() {
+		wins.clear();
+		finalKills.clear();
 	}
 	
 }
@@ -28,70 +28,95 @@
  */
 package com.gmail.filoghost.bedwars.utils;
 
-import java.util.List;
-import java.util.Map;
-
 import org.bukkit.entity.Item;
-import org.bukkit.metadata.FixedMetadataValue;
-import org.bukkit.metadata.MetadataValue;
-import com.gmail.filoghost.bedwars.Bedwars;
+
 import com.gmail.filoghost.bedwars.arena.spawners.Spawner;
-import com.google.common.collect.Maps;
 
 import lombok.AllArgsConstructor;
 
+/**
+ * Tiene traccia dei drop generati dagli spawner tramite gli eventi, senza scorrere le entità dei mondi.
+ */
 public class ResourceLocator {
 	
-	private static Map<String, WorldResourcesCache> resourcesByWorld = Maps.newHashMap();
+	private static LongObjectHashMap<TrackedDrop> dropsByEntityId = new LongObjectHashMap<>();
 	
 	
 	public static void setDropOwningSpawner(Item drop, Spawner spawner) {
-		drop.setMetadata("spawner", new FixedMetadataValue(Bedwars.get(), spawner)); // La reference allo spawner, non importa se è grande, è sempre la stessa
+		int amount = drop.getItemStack().getAmount();
+		TrackedDrop previous = dropsByEntityId.put(drop.getEntityId(), new TrackedDrop(drop, spawner, amount));
+		if (previous != null) {
+			previous.spawner.changeDroppedAmount(-previous.amount);
+		}
+		spawner.changeDroppedAmount(amount);
 	}
 	
 	
 	public static int countDropsBySpawner(Spawner spawner) {
-		int currentTickstamp = Bedwars.getTickTimer().getTicks();
-		String worldName = spawner.getBlock().getWorld().getName();
-
-		// Se è aggiornato, usa la cache
-		WorldResourcesCache worldResources = resourcesByWorld.get(worldName);
-		if (worldResources != null && worldResources.lastCacheUpdateTickstamp == currentTickstamp) {
-			return intValue(worldResources.resourcesBySpawnerCache.get(spawner));
+		return spawner.getDroppedAmount();
+	}
+	
+	
+	public static void onPickup(Item item, int remaining) {
+		TrackedDrop drop = dropsByEntityId.get(item.getEntityId());
+		if (drop == null) {
+			return;
 		}
 		
-		// Se non è aggiornato o è null, pulisce il vecchio o ne crea uno nuovo e lo mette nella map
-		if (worldResources == null) {
-			worldResources = new WorldResourcesCache(currentTickstamp, Maps.newHashMap());
-			resourcesByWorld.put(worldName, worldResources);
+		if (remaining > 0) {
+			// Raccolto solo in parte, l'entità resta con la quantità rimanente
+			drop.spawner.changeDroppedAmount(remaining - drop.amount);
+			drop.amount = remaining;
 		} else {
-			worldResources.lastCacheUpdateTickstamp = currentTickstamp;
-			worldResources.resourcesBySpawnerCache.clear();
+			removeDrop(item);
 		}
+	}
+	
+	
+	public static void onMerge(Item source, Item target) {
+		int sourceAmount = source.getItemStack().getAmount();
+		removeDrop(source);
 		
-		// Inserisce i nuovi valori
-		for (Item item : spawner.getBlock().getWorld().getEntitiesByClass(Item.class)) {
-			List<MetadataValue> metadata = item.getMetadata("spawner");
-			if (!metadata.isEmpty()) {
-				Spawner owningSpawner = (Spawner) metadata.get(0).value();
-				worldResources.resourcesBySpawnerCache.merge(owningSpawner, item.getItemStack().getAmount(), Integer::sum);
-			}
+		TrackedDrop targetDrop = dropsByEntityId.get(target.getEntityId());
+		if (targetDrop != null) {
+			targetDrop.amount += sourceAmount;
+			targetDrop.spawner.changeDroppedAmount(sourceAmount);
+		}
+	}
+	
+	
+	public static void removeDrop(Item item) {
+		TrackedDrop drop = dropsByEntityId.remove(item.getEntityId());
+		if (drop != null) {
+			drop.spawner.changeDroppedAmount(-drop.amount);
 		}
-		
-		return intValue(worldResources.resourcesBySpawnerCache.get(spawner));
 	}
 	
 	
-	private static int intValue(Integer i) {
-		return i != null ? i.intValue() : 0;
+	/**
+	 * Rimuove i drop distrutti senza un evento (lava, fuoco, vuoto), scorrendo solo quelli tracciati.
+	 */
+	public static void purgeInvalidDrops() {
+		if (dropsByEntityId.size() == 0) {
+			return;
+		}
+		
+		dropsByEntityId.removeIf(drop -> {
+			if (drop.item.isValid()) {
+				return false;
+			}
+			drop.spawner.changeDroppedAmount(-drop.amount);
+			return true;
+		});
 	}
 	
 	
 	@AllArgsConstructor
-	private static class WorldResourcesCache {
+	private static class TrackedDrop {
 		
-		private int lastCacheUpdateTickstamp;
-		private Map<Spawner, Integer> resourcesBySpawnerCache;
+		private final Item item;
+		private final Spawner spawner;
+		private int amount;
 		
 	}
 